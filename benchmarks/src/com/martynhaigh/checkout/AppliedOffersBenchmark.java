@@ -0,0 +1,105 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the allocation of working out the total savings on a basket with the sparse {@link Offer.AppliedOffers},
+ * which keeps only the offers which applied in primitive arrays, against the earlier version, which kept an
+ * {@link Offer.OfferDetails} for every offer in a List and summed them with a stream. Run with the GC profiler. The
+ * offers are either the built in constants or a few hundred generated rules of which only some apply to each basket.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AppliedOffersBenchmark {
+
+    private static final int BASKET_COUNT = 1024;
+
+    @Param({"2", "200"})
+    public int offerCount;
+
+    private String[] names;
+    private int[][] ruleQuantities;
+    private long[] ruleSavings;
+    private int[][] baskets;
+    private int basket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(offerCount);
+        names = new String[offerCount];
+        ruleQuantities = new int[offerCount][];
+        ruleSavings = new long[offerCount];
+        for (int rule = 0; rule < offerCount; rule++) {
+            if (offerCount == Offer.values().length) {
+                names[rule] = Offer.values()[rule].name();
+            } else {
+                // Mostly large multi-buys, so only a handful apply to any one basket
+                names[rule] = "RULE_" + rule;
+                ruleQuantities[rule] = new int[]{1 + random.nextInt(40), 1 + random.nextInt(40)};
+                ruleSavings[rule] = 1 + random.nextInt(100);
+            }
+        }
+
+        baskets = new int[BASKET_COUNT][];
+        for (int i = 0; i < BASKET_COUNT; i++) {
+            baskets[i] = new int[]{random.nextInt(10), random.nextInt(10)};
+        }
+    }
+
+    @Benchmark
+    public long eagerList() {
+        int[] productCounts = nextBasket();
+        List<Offer.OfferDetails> offers = new ArrayList<>(offerCount);
+        for (int rule = 0; rule < offerCount; rule++) {
+            offers.add(builtIn() ? Offer.values()[rule].applyOffer(productCounts)
+                    : new Offer.OfferDetails(names[rule], timesApplied(rule, productCounts), ruleSavings[rule]));
+        }
+        return offers.stream().mapToLong(Offer.OfferDetails::getTotalSaving).sum();
+    }
+
+    @Benchmark
+    public long sparseArrays() {
+        int[] productCounts = nextBasket();
+        if (builtIn()) {
+            return Offer.applyAllOffers(productCounts).getTotalSavings();
+        }
+        Offer.AppliedOffers appliedOffers = new Offer.AppliedOffers();
+        for (int rule = 0; rule < offerCount; rule++) {
+            appliedOffers.add(names[rule], timesApplied(rule, productCounts), ruleSavings[rule]);
+        }
+        return appliedOffers.getTotalSavings();
+    }
+
+    private boolean builtIn() {
+        return offerCount == Offer.values().length;
+    }
+
+    private int timesApplied(final int rule, final int[] productCounts) {
+        return Math.min(productCounts[0] / ruleQuantities[rule][0], productCounts[1] / ruleQuantities[rule][1]);
+    }
+
+    private int[] nextBasket() {
+        basket = (basket + 1) & (BASKET_COUNT - 1);
+        return baskets[basket];
+    }
+}
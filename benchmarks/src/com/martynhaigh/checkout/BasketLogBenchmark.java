@@ -0,0 +1,98 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares repricing a day of baskets from the text format with {@link BatchPricer} against repricing the same baskets
+ * from a binary log with {@link BasketLogPricer}. Divide the file sizes printed at setup by the time per operation for
+ * the throughput of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BasketLogBenchmark {
+
+    private static final int BASKET_COUNT = 1000000;
+
+    @Param({"5", "50"})
+    public int basketSize;
+
+    private Path textFile;
+    private Path logFile;
+    private final BatchPricer batchPricer = new BatchPricer();
+    private final BasketLogPricer basketLogPricer = new BasketLogPricer();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        textFile = Files.createTempFile("baskets", ".txt");
+        logFile = Files.createTempFile("baskets", ".bin");
+        try (BufferedWriter writer = Files.newBufferedWriter(textFile, StandardCharsets.US_ASCII)) {
+            for (int basket = 0; basket < BASKET_COUNT; basket++) {
+                writer.write(String.join(",", ShoppingLists.generate(basketSize, 0.1, basket)));
+                writer.newLine();
+            }
+        }
+        try (Reader reader = Files.newBufferedReader(textFile, StandardCharsets.US_ASCII)) {
+            BasketLogWriter.convert(reader, logFile);
+        }
+        System.out.println("Text " + Files.size(textFile) + " bytes, log " + Files.size(logFile) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(textFile);
+        Files.delete(logFile);
+    }
+
+    @Benchmark
+    public long priceText() throws IOException {
+        try (FileChannel in = FileChannel.open(textFile, StandardOpenOption.READ)) {
+            batchPricer.price(in, Channels.newChannel(NullOutputStream.INSTANCE));
+            return batchPricer.getTotals().getTotalPence();
+        }
+    }
+
+    @Benchmark
+    public long priceLog() throws IOException {
+        return basketLogPricer.price(logFile).getTotalPence();
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link BasketPricer} throughput scales with the number of threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BasketPricerBenchmark {
+
+    private static final int BASKET_COUNT = 100000;
+    private static final int BASKET_SIZE = 20;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    private List<List<Product>> baskets;
+    private BasketPricer pricer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Checkout checkout = new Checkout();
+        baskets = new ArrayList<>(BASKET_COUNT);
+        for (int i = 0; i < BASKET_COUNT; i++) {
+            baskets.add(checkout.parseShoppingList(ShoppingLists.generate(BASKET_SIZE, 0, i)));
+        }
+        pricer = new BasketPricer(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pricer.close();
+    }
+
+    @Benchmark
+    public BasketPricer.PricedBaskets price() {
+        return pricer.price(baskets);
+    }
+}
@@ -0,0 +1,46 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled and writes the results as JSON, so that a run can be diffed
+ * against the committed {@value #BASELINE_FILE}. Runs go to {@value #DEFAULT_RESULT_FILE} unless {@code -rff} says
+ * otherwise, so the baseline is only replaced on purpose. Any standard JMH command line options, such as a benchmark
+ * filter, are passed through, and the listing and help options behave as they do for JMH's own main class.
+ */
+public class BenchmarkRunner {
+
+    static final String BASELINE_FILE = "baseline.json";
+    private static final String DEFAULT_RESULT_FILE = "results.json";
+
+    public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(commandLineOptions.getResult().orElse(DEFAULT_RESULT_FILE))
+                .build();
+        Runner runner = new Runner(options);
+        if (commandLineOptions.shouldList()) {
+            runner.list();
+        } else if (commandLineOptions.shouldListWithParams()) {
+            runner.listWithParams(commandLineOptions);
+        } else {
+            runner.run();
+        }
+    }
+}
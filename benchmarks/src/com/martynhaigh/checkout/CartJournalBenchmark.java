@@ -0,0 +1,116 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the latency of journalling a scanned item, committing every item or in groups, and the time to recover a
+ * cart from a 100k event journal by full replay or from a snapshot covering most of it
+ */
+@Fork(1)
+public class CartJournalBenchmark {
+
+    private static final int RECOVERY_EVENTS = 100000;
+
+    @State(Scope.Thread)
+    public static class Appending {
+
+        @Param({"1", "64"})
+        public int eventsPerCommit;
+
+        Path directory;
+        CartJournal journal;
+        int appended;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal");
+            journal = CartJournal.open(directory, Long.MAX_VALUE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovering {
+
+        @Param({"replay", "snapshot"})
+        public String recovery;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal");
+            try (CartJournal journal = CartJournal.open(directory, Long.MAX_VALUE)) {
+                for (int event = 0; event < RECOVERY_EVENTS; event++) {
+                    if (event == RECOVERY_EVENTS - 1000 && "snapshot".equals(recovery)) {
+                        journal.snapshot();
+                    }
+                    if (event % 3 == 2) {
+                        journal.remove(Product.APPLE, 1);
+                    } else {
+                        journal.add(event % 3 == 0 ? Product.APPLE : Product.ORANGE, 1);
+                    }
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public long append(final Appending state) throws IOException {
+        long sequence = state.journal.add(Product.APPLE, 1);
+        if (++state.appended % state.eventsPerCommit == 0) {
+            state.journal.commit(sequence);
+        }
+        return sequence;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public long recover(final Recovering state) throws IOException {
+        try (CartJournal journal = CartJournal.open(state.directory, Long.MAX_VALUE)) {
+            return journal.getCart().getTotalCost();
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a 5 million SKU catalogue and looking up names in it
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CatalogueBenchmark {
+
+    private static final int SKU_COUNT = 5000000;
+
+    private Path file;
+    private Catalogue catalogue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Catalogue.Builder builder = new Catalogue.Builder();
+        for (int sku = 0; sku < SKU_COUNT; sku++) {
+            builder.add("SKU" + sku, sku % 1000);
+        }
+        file = Files.createTempFile("catalogue", ".bin");
+        builder.build().write(file);
+        catalogue = Catalogue.load(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public Catalogue load() throws IOException {
+        return Catalogue.load(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int findSku() {
+        return catalogue.findSku(" sku4999999 ");
+    }
+}
@@ -0,0 +1,82 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing a shopping list, building a cart from it and pricing the result, over a range of cart sizes
+ * and proportions of invalid item names.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckoutBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int cartSize;
+
+    @Param({"0.0", "0.1", "0.5"})
+    public double invalidRatio;
+
+    private String[] shoppingList;
+    private List<Product> products;
+    private Checkout filledCheckout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Checkout checkout = new Checkout();
+        shoppingList = ShoppingLists.generate(cartSize, invalidRatio);
+        products = checkout.parseShoppingList(shoppingList);
+
+        filledCheckout = new Checkout();
+        filledCheckout.addItemsToCart(products);
+    }
+
+    @Benchmark
+    public List<Product> parseShoppingList() {
+        return new Checkout().parseShoppingList(shoppingList);
+    }
+
+    @Benchmark
+    public Checkout addItemsToCart() {
+        Checkout checkout = new Checkout();
+        checkout.addItemsToCart(products);
+        return checkout;
+    }
+
+    @Benchmark
+    public long getCartTotalCost() {
+        return filledCheckout.getCartTotalCost();
+    }
+
+    @Benchmark
+    public String getPrintout() {
+        return filledCheckout.getPrintout();
+    }
+
+    @Benchmark
+    public String getPrintoutWithFormat() {
+        return String.format(Checkout.CART_PRINTOUT_TEMPLATE, filledCheckout.getCartItems().size(), (float) filledCheckout.getCartTotalCost() / 100);
+    }
+
+    @Benchmark
+    public String getReceipt() {
+        return filledCheckout.getReceipt();
+    }
+}
@@ -0,0 +1,112 @@
+package com.martynhaigh.checkout;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a {@link CheckoutServer} with many concurrent sessions and reports the latency of each request.
+ * <p>
+ * Every session is opened before any is closed, so the server holds all of them at once. The sessions are shared out
+ * between the connections, and each connection adds an item to each of its sessions in turn, waiting for every
+ * response before sending the next request. A warm up pass with the same shape runs first and isn't recorded.
+ * <pre>
+ * java -cp target/benchmarks.jar com.martynhaigh.checkout.CheckoutLoadGenerator [sessions] [connections] [items per session] [port]
+ * </pre>
+ * Without a port a server is started in process.
+ */
+public class CheckoutLoadGenerator {
+
+    private static final String[] ITEMS = {"apple", "Orange", " APPLE", "orange"};
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int itemsPerSession = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        CheckoutServer server = args.length > 3 ? null : new CheckoutServer(0, TimeUnit.MINUTES.toMillis(10));
+        int port = server != null ? server.getPort() : Integer.parseInt(args[3]);
+        try {
+            run(port, sessions, connections, itemsPerSession, "warmup");
+            Histogram latencies = run(port, sessions, connections, itemsPerSession, "measure");
+            System.out.printf("%d sessions over %d connections, %d requests%n", sessions, connections, latencies.getTotalCount());
+            System.out.printf("p50 %.1fus, p99 %.1fus, p999 %.1fus, max %.1fus%n",
+                    latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getValueAtPercentile(99.9) / 1000.0, latencies.getMaxValue() / 1000.0);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * @param prefix Names the sessions, so passes don't share sessions
+     * @return The latency of every request, in nanoseconds
+     */
+    private static Histogram run(final int port, final int sessions, final int connections, final int itemsPerSession, final String prefix)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            long start = System.nanoTime();
+            List<Future<Histogram>> results = new ArrayList<>();
+            for (int connection = 0; connection < connections; connection++) {
+                int first = connection;
+                results.add(executor.submit(() -> drive(port, prefix, first, sessions, connections, itemsPerSession)));
+            }
+            Histogram latencies = new Histogram(3);
+            for (Future<Histogram> result : results) {
+                latencies.add(result.get());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %.0f requests per second%n", prefix, latencies.getTotalCount() / seconds);
+            return latencies;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Uses the sessions first, first + stride, first + 2 * stride and so on over one connection
+     */
+    private static Histogram drive(final int port, final String prefix, final int first, final int sessions, final int stride,
+                                   final int itemsPerSession) throws IOException {
+        Histogram latencies = new Histogram(3);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+            for (int item = 0; item <= itemsPerSession; item++) {
+                for (int session = first; session < sessions; session += stride) {
+                    String command = item < itemsPerSession ? "ADD " : "CLOSE ";
+                    String request = command + prefix + session + (item < itemsPerSession ? " " + ITEMS[item % ITEMS.length] : "") + "\n";
+
+                    long start = System.nanoTime();
+                    out.write(request);
+                    out.flush();
+                    String response = in.readLine();
+                    latencies.recordValue(System.nanoTime() - start);
+
+                    if (response == null || !response.startsWith("OK")) {
+                        throw new IOException("Unexpected response to " + request.trim() + ": " + response);
+                    }
+                }
+            }
+        }
+        return latencies;
+    }
+}
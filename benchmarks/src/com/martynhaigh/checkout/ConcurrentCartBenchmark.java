@@ -0,0 +1,137 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Scanners adding to a {@link ConcurrentCart} while a till takes snapshots of it, against the same cart guarded by a
+ * {@link StampedLock} which adds share and snapshots hold exclusively. The lock makes every add write the same lock
+ * word, and holds adds up while a snapshot is taken. Needs more cores than the group has threads to mean anything.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentCartBenchmark {
+
+    private static final int SCANNERS = 3;
+
+    private ConcurrentCart cart;
+    private LockedCart lockedCart;
+    private int[] pair;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        cart = new ConcurrentCart();
+        lockedCart = new LockedCart();
+        pair = new int[Product.values().length];
+        pair[Product.APPLE.ordinal()] = 1;
+        pair[Product.ORANGE.ordinal()] = 1;
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(SCANNERS)
+    public void lockFreeAdd() {
+        cart.add(Product.APPLE, 1);
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(1)
+    public void lockFreeMultipack() {
+        cart.add(pair);
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(1)
+    public int[] lockFreeSnapshot() {
+        return cart.getProductCounts();
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(SCANNERS)
+    public void lockedAdd() {
+        lockedCart.add(Product.APPLE.ordinal(), 1);
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedMultipack() {
+        lockedCart.add(pair);
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public long[] lockedSnapshot() {
+        return lockedCart.getProductCounts();
+    }
+
+    /**
+     * The cart as it was before snapshots were taken without a lock
+     */
+    private static final class LockedCart {
+        private final LongAdder[] productCounts = new LongAdder[Product.values().length];
+        private final StampedLock snapshotLock = new StampedLock();
+
+        LockedCart() {
+            for (int i = 0; i < productCounts.length; i++) {
+                productCounts[i] = new LongAdder();
+            }
+        }
+
+        void add(final int product, final int quantity) {
+            long stamp = snapshotLock.readLock();
+            try {
+                productCounts[product].add(quantity);
+            } finally {
+                snapshotLock.unlockRead(stamp);
+            }
+        }
+
+        void add(final int[] quantities) {
+            long stamp = snapshotLock.readLock();
+            try {
+                for (int product = 0; product < quantities.length; product++) {
+                    productCounts[product].add(quantities[product]);
+                }
+            } finally {
+                snapshotLock.unlockRead(stamp);
+            }
+        }
+
+        long[] getProductCounts() {
+            long[] sums = new long[productCounts.length];
+            long stamp = snapshotLock.writeLock();
+            try {
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] = productCounts[i].sum();
+                }
+            } finally {
+                snapshotLock.unlockWrite(stamp);
+            }
+            return sums;
+        }
+    }
+}
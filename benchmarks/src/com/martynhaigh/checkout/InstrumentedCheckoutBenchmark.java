@@ -0,0 +1,10 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * Runs {@link CheckoutBenchmark} with {@link PricingMetrics} switched on, to compare against the uninstrumented scores
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dcheckout.metrics=true")
+public class InstrumentedCheckoutBenchmark extends CheckoutBenchmark {
+}
@@ -0,0 +1,94 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares pricing a batch of baskets with the long pence arithmetic against the int arithmetic it replaced. Both do
+ * the same work, summing the products and subtracting the offers with prices and savings held in arrays of their own
+ * width, so the only difference is long arithmetic with overflow checked totals against unchecked ints.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyArithmeticBenchmark {
+
+    private static final int BASKET_COUNT = 100000;
+    private static final Offer[] OFFERS = Offer.values();
+
+    private int[][] baskets;
+    private long[] longPrices;
+    private long[] longSavings;
+    private int[] intPrices;
+    private int[] intSavings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(BASKET_COUNT);
+        baskets = new int[BASKET_COUNT][Product.values().length];
+        for (int[] basket : baskets) {
+            for (int product = 0; product < basket.length; product++) {
+                basket[product] = random.nextInt(20);
+            }
+        }
+        longPrices = new long[Product.values().length];
+        intPrices = new int[Product.values().length];
+        for (Product product : Product.values()) {
+            longPrices[product.ordinal()] = product.getPriceInPence();
+            intPrices[product.ordinal()] = Math.toIntExact(product.getPriceInPence());
+        }
+        longSavings = new long[OFFERS.length];
+        intSavings = new int[OFFERS.length];
+        for (Offer offer : OFFERS) {
+            longSavings[offer.ordinal()] = offer.getSavingEachTime();
+            intSavings[offer.ordinal()] = Math.toIntExact(offer.getSavingEachTime());
+        }
+    }
+
+    @Benchmark
+    public long priceWithLong() {
+        DailyTotals totals = new DailyTotals();
+        for (int[] basket : baskets) {
+            long basketTotal = 0;
+            for (int product = 0; product < basket.length; product++) {
+                basketTotal += basket[product] * longPrices[product];
+            }
+            for (int offer = 0; offer < OFFERS.length; offer++) {
+                basketTotal -= OFFERS[offer].timesApplied(basket) * longSavings[offer];
+            }
+            totals.addBasket(basketTotal);
+        }
+        return totals.getTotalPence();
+    }
+
+    @Benchmark
+    public int priceWithInt() {
+        int total = 0;
+        for (int[] basket : baskets) {
+            int basketTotal = 0;
+            for (int product = 0; product < basket.length; product++) {
+                basketTotal += basket[product] * intPrices[product];
+            }
+            for (int offer = 0; offer < OFFERS.length; offer++) {
+                basketTotal -= OFFERS[offer].timesApplied(basket) * intSavings[offer];
+            }
+            total += basketTotal;
+        }
+        return total;
+    }
+}
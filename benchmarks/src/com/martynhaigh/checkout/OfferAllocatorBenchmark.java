@@ -0,0 +1,60 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures allocating a 200 item cart to 50 overlapping promotions, against the 1ms budget
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OfferAllocatorBenchmark {
+
+    private static final int RULE_COUNT = 50;
+
+    private final int[] productCounts = {80, 120};
+    private OfferAllocator allocator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(RULE_COUNT);
+        StringBuilder definitions = new StringBuilder();
+        for (int rule = 0; rule < RULE_COUNT; rule++) {
+            int apples = random.nextInt(4);
+            int oranges = random.nextInt(4) + (apples == 0 ? 1 : 0);
+            StringBuilder bundle = new StringBuilder();
+            for (int i = 0; i < apples; i++) {
+                bundle.append(" APPLE");
+            }
+            for (int i = 0; i < oranges; i++) {
+                bundle.append(" ORANGE");
+            }
+            int fullPrice = apples * 60 + oranges * 25;
+            definitions.append("RULE_").append(rule).append(" = BUNDLE ").append(fullPrice / 2 + random.nextInt(fullPrice / 2)).append(bundle).append('\n');
+        }
+        allocator = new OfferAllocator(OfferRules.load(new StringReader(definitions.toString())), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Benchmark
+    public Offer.AppliedOffers allocate() {
+        return allocator.allocate(productCounts);
+    }
+}
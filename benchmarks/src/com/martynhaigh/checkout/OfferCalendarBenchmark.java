@@ -0,0 +1,112 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares repricing a time sorted replay of baskets against a calendar of two years of weekly promotions, by scanning
+ * every interval for each basket, by looking each basket up in the change point index, and with a {@link
+ * OfferCalendar.Cursor} which only searches when the replay crosses into a new window
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OfferCalendarBenchmark {
+
+    private static final int BASKET_COUNT = 100000;
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private Offer[] intervalOffers;
+    private long[][] intervals;
+    private OfferCalendar calendar;
+    private long[] timestamps;
+    private int[][] baskets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(BASKET_COUNT);
+        OfferCalendar.Builder builder = new OfferCalendar.Builder();
+        int intervalCount = 104 * Offer.values().length;
+        intervalOffers = new Offer[intervalCount];
+        intervals = new long[intervalCount][];
+        for (int i = 0; i < intervalCount; i++) {
+            // Each offer runs for a few hours to a few days in each week
+            long from = i / Offer.values().length * WEEK_MILLIS + random.nextInt(72) * HOUR_MILLIS;
+            long until = from + (1 + random.nextInt(72)) * HOUR_MILLIS;
+            intervalOffers[i] = Offer.values()[i % Offer.values().length];
+            intervals[i] = new long[]{from, until};
+            builder.add(intervalOffers[i], from, until);
+        }
+        calendar = builder.build();
+
+        timestamps = new long[BASKET_COUNT];
+        baskets = new int[BASKET_COUNT][];
+        for (int basket = 0; basket < BASKET_COUNT; basket++) {
+            timestamps[basket] = (long) (random.nextDouble() * 104 * WEEK_MILLIS);
+            baskets[basket] = new int[]{random.nextInt(10), random.nextInt(10)};
+        }
+        Arrays.sort(timestamps);
+    }
+
+    @Benchmark
+    public long scanIntervals() {
+        long total = 0;
+        boolean[] live = new boolean[Offer.values().length];
+        for (int basket = 0; basket < BASKET_COUNT; basket++) {
+            Arrays.fill(live, false);
+            for (int i = 0; i < intervals.length; i++) {
+                if (timestamps[basket] >= intervals[i][0] && timestamps[basket] < intervals[i][1]) {
+                    live[intervalOffers[i].ordinal()] = true;
+                }
+            }
+            long savings = 0;
+            for (Offer offer : Offer.values()) {
+                if (live[offer.ordinal()]) {
+                    savings += offer.applyOffer(baskets[basket]).getTotalSaving();
+                }
+            }
+            total += Product.getPriceInPence(baskets[basket]) - savings;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long lookUpEachBasket() {
+        long total = 0;
+        for (int basket = 0; basket < BASKET_COUNT; basket++) {
+            long savings = 0;
+            for (Offer offer : calendar.getActiveOffers(timestamps[basket])) {
+                savings += offer.applyOffer(baskets[basket]).getTotalSaving();
+            }
+            total += Product.getPriceInPence(baskets[basket]) - savings;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long cursor() {
+        OfferCalendar.Cursor cursor = calendar.cursor();
+        long total = 0;
+        for (int basket = 0; basket < BASKET_COUNT; basket++) {
+            total += cursor.getTotalCost(baskets[basket], timestamps[basket]);
+        }
+        return total;
+    }
+}
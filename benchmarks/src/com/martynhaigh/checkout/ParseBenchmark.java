@@ -0,0 +1,58 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares three ways of matching a scanned name to a {@link Product}, for both valid and invalid names:
+ * <ul>
+ * <li>{@link ProductNameParser#parse(CharSequence)}, the allocation free parser on its own</li>
+ * <li>{@link Checkout#parseItemName(CharSequence)}, which looks the name up in the active {@link Catalogue} with
+ * {@link Catalogue#findProduct(CharSequence)} and counts rejected names, so it measures the catalogue lookup rather
+ * than the parser</li>
+ * <li>the original upper case, trim and {@link Product#valueOf(String)} lookup, throwing for invalid names</li>
+ * </ul>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({" Apple ", "orANge", "Pineapple", "appl e"})
+    public String itemName;
+
+    private final Checkout checkout = new Checkout();
+
+    @Benchmark
+    public Product productNameParser() {
+        return ProductNameParser.parse(itemName);
+    }
+
+    @Benchmark
+    public Product parseItemName() {
+        return checkout.parseItemName(itemName);
+    }
+
+    @Benchmark
+    public Product parseItemNameWithValueOf() {
+        String name = itemName.toUpperCase().trim();
+        try {
+            return Product.valueOf(name);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares counting the products in a basket with a stream per product, {@link Product#countProducts(List)} and the
+ * {@link ProductHistogram} kernels over arrays of ordinals. {@code countArray} only uses the Vector API kernel when the
+ * checkout was installed with the {@code vector} profile and the benchmark is run with
+ * {@code -jvmArgsAppend --add-modules=jdk.incubator.vector}, otherwise it matches {@code countLanes}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ProductHistogramBenchmark {
+
+    @Param({"1000", "1000000", "100000000"})
+    public int size;
+
+    private List<Product> shoppingList;
+    private byte[] ordinals;
+    private short[] shortOrdinals;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(size);
+        Product[] products = new Product[size];
+        ordinals = new byte[size];
+        shortOrdinals = new short[size];
+        for (int i = 0; i < size; i++) {
+            products[i] = Product.values()[random.nextInt(Product.values().length)];
+            ordinals[i] = (byte) products[i].ordinal();
+            shortOrdinals[i] = ordinals[i];
+        }
+        shoppingList = Arrays.asList(products);
+    }
+
+    @Benchmark
+    public int[] countWithStreams() {
+        int[] productCounts = new int[Product.values().length];
+        for (Product product : Product.values()) {
+            productCounts[product.ordinal()] = (int) shoppingList.stream().filter(item -> item == product).count();
+        }
+        return productCounts;
+    }
+
+    @Benchmark
+    public int[] countProducts() {
+        return Product.countProducts(shoppingList);
+    }
+
+    @Benchmark
+    public int[] countLanes() {
+        int[] productCounts = new int[Product.values().length];
+        ProductHistogram.count(ByteBuffer.wrap(ordinals), 0, ordinals.length, productCounts);
+        return productCounts;
+    }
+
+    @Benchmark
+    public int[] countArray() {
+        return ProductHistogram.count(ordinals);
+    }
+
+    @Benchmark
+    public int[] countScalar() {
+        return ProductHistogram.countScalar(ordinals, 0, ordinals.length);
+    }
+
+    @Benchmark
+    public int[] countShorts() {
+        return ProductHistogram.count(shortOrdinals);
+    }
+}
@@ -0,0 +1,86 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares simulating 100 candidate promotions over historical baskets held in columns against applying each
+ * scenario's rules to each basket in turn. The target is 100 scenarios over 10M baskets in seconds.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class PromotionSimulatorBenchmark {
+
+    private static final int SCENARIO_COUNT = 100;
+
+    @Param({"100000", "10000000"})
+    public int basketCount;
+
+    private List<OfferRules> scenarios;
+    private PromotionSimulator simulator;
+    private int[][] baskets;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(basketCount);
+        scenarios = new ArrayList<>();
+        for (int scenario = 0; scenario < SCENARIO_COUNT; scenario++) {
+            // A handful of shapes of promotion with the free quantity, price or discount varied between scenarios
+            String rules = "APPLES = BUY_GET APPLE " + (1 + scenario % 4) + " 1\n"
+                    + "ORANGES = MULTI_BUY ORANGE " + (2 + scenario % 3) + " " + (40 + scenario % 10) + "\n"
+                    + "BOWL = BUNDLE " + (60 + scenario % 20) + " APPLE ORANGE\n"
+                    + "ORANGES_OFF = PERCENT_OFF ORANGE " + (5 + scenario % 30) + "\n";
+            scenarios.add(OfferRules.load(new StringReader(rules)));
+        }
+
+        PromotionSimulator.Builder builder = new PromotionSimulator.Builder();
+        baskets = new int[basketCount][];
+        for (int basket = 0; basket < basketCount; basket++) {
+            baskets[basket] = new int[]{random.nextInt(10), random.nextInt(10)};
+            builder.add(baskets[basket]);
+        }
+        simulator = builder.build();
+    }
+
+    @Benchmark
+    public long applyPerBasket() {
+        long revenue = 0;
+        for (OfferRules rules : scenarios) {
+            for (int[] basket : baskets) {
+                revenue += Product.getPriceInPence(basket) - rules.apply(basket).getTotalSavings();
+            }
+        }
+        return revenue;
+    }
+
+    @Benchmark
+    public long simulateColumns() {
+        PromotionSimulator.Results results = simulator.simulate(scenarios);
+        long revenue = 0;
+        for (int scenario = 0; scenario < results.getScenarioCount(); scenario++) {
+            revenue += results.getRevenue(scenario);
+        }
+        return revenue;
+    }
+}
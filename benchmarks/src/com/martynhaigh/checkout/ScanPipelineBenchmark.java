@@ -0,0 +1,87 @@
+package com.martynhaigh.checkout;
+
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a burst of scans from a lane going through the {@link ScanPipeline} against parsing and adding each one
+ * through {@link Checkout} as the scanner delivers it. Run with the GC profiler to see the allocation per burst, and
+ * the pipeline's scan to total latencies are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanPipelineBenchmark {
+
+    private static final String[] SCANS = {"Apple", "Orange", "apple", " ORANGE", "misread"};
+
+    @Param({"1", "64", "1024"})
+    public int burstSize;
+
+    private String[] burst;
+    private ScanPipeline pipeline;
+    private Checkout checkout;
+    private long displayedTotal;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(burstSize);
+        burst = new String[burstSize];
+        for (int i = 0; i < burstSize; i++) {
+            burst[i] = SCANS[random.nextInt(SCANS.length)];
+        }
+        pipeline = new ScanPipeline(1024, new ScanPipeline.TotalListener() {
+            @Override
+            public void onTotal(final long sequence, final int itemCount, final long totalPence) {
+                displayedTotal = totalPence;
+            }
+        });
+        checkout = new Checkout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Histogram latencies = pipeline.getLatencies();
+        pipeline.close();
+        if (latencies.getTotalCount() > 0) {
+            System.out.printf("%nBursts of %d: p50 %.1fus, p99 %.1fus, p999 %.1fus, max %.1fus%n", burstSize,
+                    latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getValueAtPercentile(99.9) / 1000.0, latencies.getMaxValue() / 1000.0);
+        }
+    }
+
+    @Benchmark
+    public long pipeline() throws InterruptedException {
+        for (String scan : burst) {
+            pipeline.publish(scan);
+        }
+        pipeline.awaitRefreshed();
+        return displayedTotal;
+    }
+
+    @Benchmark
+    public long checkoutPerScan() {
+        for (String scan : burst) {
+            checkout.addItemsToCart(checkout.parseShoppingList(new String[]{scan}));
+        }
+        return checkout.getCartTotalCost();
+    }
+}
@@ -0,0 +1,66 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures repricing a 10 million basket log with {@link ShardCoordinator} as the number of worker JVMs grows, against
+ * pricing it in this JVM. Each run includes starting the workers.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedRepricingBenchmark {
+
+    private static final int BASKET_COUNT = 10000000;
+
+    @Param({"0", "1", "2", "4"})
+    public int workers;
+
+    private Path log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        log = Files.createTempFile("baskets", ".bin");
+        Random random = new Random(BASKET_COUNT);
+        try (BasketLogWriter writer = new BasketLogWriter(log)) {
+            for (int basket = 0; basket < BASKET_COUNT; basket++) {
+                for (int item = random.nextInt(30); item > 0; item--) {
+                    writer.addItem(Product.values()[random.nextInt(Product.values().length)]);
+                }
+                writer.endBasket();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(log);
+    }
+
+    @Benchmark
+    public long price() throws IOException, InterruptedException {
+        DailyTotals totals = workers == 0 ? new BasketLogPricer().price(log) : ShardCoordinator.price(log, workers);
+        return totals.getTotalPence();
+    }
+}
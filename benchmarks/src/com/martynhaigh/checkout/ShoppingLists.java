@@ -0,0 +1,40 @@
+package com.martynhaigh.checkout;
+
+import java.util.Random;
+
+/**
+ * Generates reproducible shopping lists for the benchmarks
+ */
+final class ShoppingLists {
+
+    private static final String[] VALID_NAMES = {"Apple", "apple", " APPLE ", "Orange", "orange", " oRaNgE"};
+    private static final String[] INVALID_NAMES = {"Pineapple", "apples", "appl e", "ooranges", "o range"};
+
+    private ShoppingLists() {
+    }
+
+    /**
+     * @param size         The number of names in the list
+     * @param invalidRatio The proportion of names which don't match any {@link Product}, between 0 and 1
+     * @return A shopping list of item names
+     */
+    static String[] generate(int size, double invalidRatio) {
+        return generate(size, invalidRatio, size);
+    }
+
+    /**
+     * @param size         The number of names in the list
+     * @param invalidRatio The proportion of names which don't match any {@link Product}, between 0 and 1
+     * @param seed         The seed for the random choice of names
+     * @return A shopping list of item names
+     */
+    static String[] generate(int size, double invalidRatio, long seed) {
+        Random random = new Random(seed);
+        String[] shoppingList = new String[size];
+        for (int i = 0; i < size; i++) {
+            String[] names = random.nextDouble() < invalidRatio ? INVALID_NAMES : VALID_NAMES;
+            shoppingList[i] = names[random.nextInt(names.length)];
+        }
+        return shoppingList;
+    }
+}
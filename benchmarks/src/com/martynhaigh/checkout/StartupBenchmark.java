@@ -0,0 +1,108 @@
+package com.martynhaigh.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from launching the CLI in a new JVM to reading its printout, the cost a till script pays on every
+ * call. The target is under 50ms.
+ * <ul>
+ * <li>{@code default} starts the JVM with no options</li>
+ * <li>{@code tuned} stops at the C1 compiler and uses the serial collector, as a short run never benefits from C2</li>
+ * <li>{@code cds} also maps an AppCDS archive of the CLI's classes, dumped at setup the same way as
+ * {@code mvn -Pcds package}</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 30)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final String[] SHOPPING_LIST = {"Apple", "Apple", "Orange", "Apple"};
+    private static final List<String> TUNED_OPTIONS = Arrays.asList("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC");
+
+    @Param({"default", "tuned", "cds"})
+    public String launch;
+
+    private Path archive;
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> options = new ArrayList<>();
+        if (!"default".equals(launch)) {
+            options.addAll(TUNED_OPTIONS);
+        }
+        if ("cds".equals(launch)) {
+            archive = Files.createTempFile("checkout", ".jsa");
+            Files.delete(archive);
+            run(commandLine(java, "-XX:ArchiveClassesAtExit=" + archive));
+            options.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command = commandLine(java, options.toArray(new String[0]));
+    }
+
+    private static List<String> commandLine(final String java, final String... options) {
+        List<String> commandLine = new ArrayList<>();
+        commandLine.add(java);
+        commandLine.addAll(Arrays.asList(options));
+        commandLine.add("-cp");
+        commandLine.add(System.getProperty("java.class.path"));
+        commandLine.add(Checkout.class.getName());
+        commandLine.addAll(Arrays.asList(SHOPPING_LIST));
+        return commandLine;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (archive != null) {
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    @Benchmark
+    public String timeToPrintout() throws IOException, InterruptedException {
+        return run(command);
+    }
+
+    private static String run(final List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        ByteArrayOutputStream printout = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[256];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                printout.write(buffer, 0, read);
+            }
+        }
+        if (process.waitFor() != 0 || printout.size() == 0) {
+            throw new IllegalStateException("The checkout failed to print anything: " + command);
+        }
+        return printout.toString("UTF-8");
+    }
+}
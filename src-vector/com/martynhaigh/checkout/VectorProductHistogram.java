@@ -0,0 +1,40 @@
+package com.martynhaigh.checkout;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Counts byte ordinals with the JDK Vector API, comparing a whole register of ordinals with each product at once.
+ * Only built by the {@code vector} profile, and only used by {@link ProductHistogram} when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+final class VectorProductHistogram implements ProductHistogram.Kernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public void count(final byte[] ordinals, final int from, final int to, final int[] productCounts) {
+        int productCount = productCounts.length;
+        int index = from;
+        for (int upperBound = from + SPECIES.loopBound(to - from); index < upperBound; index += SPECIES.length()) {
+            ByteVector lanes = ByteVector.fromArray(SPECIES, ordinals, index);
+            // Every product is matched, so a lane holding anything else leaves the register short of a full count
+            int counted = 0;
+            for (int product = 0; product < productCount; product++) {
+                int matches = lanes.eq((byte) product).trueCount();
+                productCounts[product] += matches;
+                counted += matches;
+            }
+            if (counted != SPECIES.length()) {
+                throw ProductHistogram.invalidOrdinal(index);
+            }
+        }
+        for (; index < to; index++) {
+            int product = ordinals[index] & 0xFF;
+            if (product >= productCount) {
+                throw ProductHistogram.invalidOrdinal(index);
+            }
+            productCounts[product]++;
+        }
+    }
+}
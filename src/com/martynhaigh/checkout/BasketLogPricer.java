@@ -0,0 +1,334 @@
+package com.martynhaigh.checkout;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Prices every basket in a log written by {@link BasketLogWriter}, reading the items straight out of the memory mapped
+ * file. No names are parsed and no {@link Product} objects or Lists are created, each basket is counted into a single
+ * reused array and priced from that.
+ * <p>
+ * Logs larger than a mapping allows are mapped a window at a time, with each window starting on a basket boundary.
+ */
+public class BasketLogPricer {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final Offer[] OFFERS = Offer.values();
+
+    /**
+     * Receives each basket read from a log
+     */
+    interface BasketVisitor {
+        /**
+         * @param productCounts The quantity of each {@link Product} in the basket, indexed by {@link Product#ordinal()}.
+         *                      The array is reused for the next basket.
+         */
+        void visit(int[] productCounts);
+    }
+
+    // The current basket, indexed by Product.ordinal()
+    private final int[] productCounts = new int[Product.values().length];
+
+    private final PricingCache pricingCache;
+    private long basketsRead;
+
+    public BasketLogPricer() {
+        this(null);
+    }
+
+    /**
+     * @param pricingCache The cache to price baskets through, or null to price every basket
+     */
+    public BasketLogPricer(final PricingCache pricingCache) {
+        this.pricingCache = pricingCache;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: BasketLogPricer <basket log>");
+            return;
+        }
+        DailyTotals totals = new BasketLogPricer().price(Paths.get(args[0]));
+        System.out.println(totals.getBasketCount() + "," + totals.getTotalPence());
+    }
+
+    /**
+     * Prices every basket in a log
+     *
+     * @param file The log to price
+     * @return The overflow checked totals of every basket in the log
+     * @throws IOException If the file can't be read or isn't a complete basket log
+     */
+    public DailyTotals price(final Path file) throws IOException {
+        DailyTotals totals = new DailyTotals();
+        read(file, basket -> totals.addBasket(priceBasket(totals)));
+        return totals;
+    }
+
+    /**
+     * Reads every basket in a log without pricing it
+     *
+     * @param file    The log to read
+     * @param visitor Given the contents of each basket in turn
+     * @return The number of baskets read
+     * @throws IOException If the file can't be read or isn't a complete basket log
+     */
+    long read(final Path file, final BasketVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long basketCount = readHeader(channel, file);
+            long read = readRange(channel, file, BasketLogWriter.HEADER_SIZE, channel.size(), visitor);
+            if (read != basketCount) {
+                throw new IOException("Basket log " + file + " should hold " + basketCount + " baskets but holds " + read);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Prices the baskets in part of a log, such as a shard found by {@link #split(Path, int)}
+     *
+     * @param file  The log to price
+     * @param start The offset of the first basket to price
+     * @param end   The offset just after the last basket to price
+     * @return The overflow checked totals of the baskets in the range
+     * @throws IOException If the file can't be read, isn't a basket log or the range doesn't hold whole baskets
+     */
+    public DailyTotals price(final Path file, final long start, final long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readHeader(channel, file);
+            if (start < BasketLogWriter.HEADER_SIZE || end < start || end > channel.size()) {
+                throw new IllegalArgumentException("Range " + start + " to " + end + " is outside the baskets in " + file);
+            }
+            DailyTotals totals = new DailyTotals();
+            readRange(channel, file, start, end, basket -> totals.addBasket(priceBasket(totals)));
+            return totals;
+        }
+    }
+
+    /**
+     * Splits a log into ranges of whole baskets of about the same size. The format has no markers between baskets, so
+     * this steps over every basket length in the log, but doesn't read the items.
+     *
+     * @param file       The log to split
+     * @param shardCount The number of ranges wanted
+     * @return Offsets of the start of each range followed by the end of the last one, with fewer ranges than asked
+     * for when there aren't enough baskets
+     * @throws IOException If the file can't be read or isn't a complete basket log
+     */
+    public static long[] split(final Path file, final int shardCount) throws IOException {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("The shard count must be positive");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readHeader(channel, file);
+            long size = channel.size();
+            long[] boundaries = new long[shardCount + 1];
+            boundaries[0] = BasketLogWriter.HEADER_SIZE;
+            int shard = 1;
+            long position = BasketLogWriter.HEADER_SIZE;
+            while (position < size && shard < shardCount) {
+                long windowSize = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                boolean lastWindow = position + windowSize == size;
+                int basketStart = 0;
+                try {
+                    while (basketStart < window.limit() && shard < shardCount) {
+                        if (!lastWindow && window.limit() - basketStart < BasketLogWriter.MAX_VARINT_SIZE) {
+                            break;
+                        }
+                        window.position(basketStart);
+                        int basketEnd = skipBasket(window);
+                        if (basketEnd > window.limit() || basketEnd < basketStart) {
+                            break;
+                        }
+                        basketStart = basketEnd;
+                        long target = BasketLogWriter.HEADER_SIZE + (size - BasketLogWriter.HEADER_SIZE) * shard / shardCount;
+                        if (position + basketStart >= target && position + basketStart < size) {
+                            boundaries[shard++] = position + basketStart;
+                        }
+                    }
+                } catch (final BufferUnderflowException e) {
+                    basketStart = 0;
+                }
+                if (basketStart == 0) {
+                    throw new IOException("Basket log " + file + " is truncated at byte " + position);
+                }
+                position += basketStart;
+            }
+            boundaries[shard] = size;
+            return Arrays.copyOf(boundaries, shard + 1);
+        }
+    }
+
+    /**
+     * @param file The log to check
+     * @return The number of baskets the header says the log holds
+     * @throws IOException If the file can't be read or isn't a basket log
+     */
+    static long readBasketCount(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file);
+        }
+    }
+
+    /**
+     * @return The offset within the window of the end of the basket starting at its position
+     */
+    private static int skipBasket(final MappedByteBuffer window) throws IOException {
+        int lengthAndEncoding = getVarint(window);
+        return window.position() + (lengthAndEncoding >>> 1);
+    }
+
+    /**
+     * Checks the header of a log
+     *
+     * @return The number of baskets the header says the log holds
+     */
+    private static long readHeader(final FileChannel channel, final Path file) throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), BasketLogWriter.HEADER_SIZE));
+        if (header.remaining() < BasketLogWriter.HEADER_SIZE || header.getInt() != BasketLogWriter.MAGIC
+                || header.getInt() != BasketLogWriter.FORMAT_VERSION) {
+            throw new IOException("Not a basket log: " + file);
+        }
+        if (header.getInt() != Product.values().length) {
+            throw new IOException("Basket log " + file + " was written for a different set of products");
+        }
+        return header.getLong();
+    }
+
+    /**
+     * @return The number of baskets read
+     */
+    private long readRange(final FileChannel channel, final Path file, final long start, final long end, final BasketVisitor visitor) throws IOException {
+        basketsRead = 0;
+        long position = start;
+        while (position < end) {
+            long windowSize = Math.min(WINDOW_SIZE, end - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            window.order(ByteOrder.nativeOrder());
+            int consumed;
+            try {
+                consumed = readWindow(window, file, position, position + windowSize == end, visitor);
+            } catch (final BufferUnderflowException e) {
+                consumed = 0;
+            }
+            if (consumed == 0) {
+                throw new IOException("Basket log " + file + " is truncated at byte " + position);
+            }
+            position += consumed;
+        }
+        return basketsRead;
+    }
+
+    /**
+     * Reads the complete baskets in a window of the log
+     *
+     * @param window      The mapped window, starting at a basket
+     * @param file        The log, for error messages
+     * @param windowStart The offset of the window in the log, for error messages
+     * @param lastWindow  Whether the window runs to the end of the log, so a basket cut short by its end is an error
+     * @param visitor     Given the contents of each basket
+     * @return The number of bytes of whole baskets read
+     * @throws IOException If a basket holds an unknown product or a run which doesn't fit in the basket
+     */
+    private int readWindow(final MappedByteBuffer window, final Path file, final long windowStart, final boolean lastWindow,
+                           final BasketVisitor visitor) throws IOException {
+        int limit = window.limit();
+        int basketStart = 0;
+        while (basketStart < limit) {
+            // Leave a basket whose length might be cut off for the next window
+            if (!lastWindow && limit - basketStart < BasketLogWriter.MAX_VARINT_SIZE) {
+                break;
+            }
+            window.position(basketStart);
+            int lengthAndEncoding = getVarint(window);
+            int itemsStart = window.position();
+            int itemsEnd = itemsStart + (lengthAndEncoding >>> 1);
+            if (itemsEnd > limit || itemsEnd < itemsStart) {
+                break;
+            }
+
+            Arrays.fill(productCounts, 0);
+            if ((lengthAndEncoding & 1) == BasketLogWriter.RUNS) {
+                while (window.position() < itemsEnd) {
+                    int product = window.get() & 0xFF;
+                    int quantity = getVarint(window);
+                    if (product >= productCounts.length || quantity < 0 || window.position() > itemsEnd) {
+                        throw new IOException("Basket log " + file + " is corrupt in the basket at byte " + (windowStart + basketStart));
+                    }
+                    productCounts[product] = Math.addExact(productCounts[product], quantity);
+                }
+            } else {
+                try {
+                    ProductHistogram.count(window, itemsStart, itemsEnd, productCounts);
+                } catch (final IllegalArgumentException e) {
+                    throw new IOException("Basket log " + file + " is corrupt in the basket at byte " + (windowStart + basketStart), e);
+                }
+            }
+            visitor.visit(productCounts);
+            basketsRead++;
+            basketStart = itemsEnd;
+        }
+        return basketStart;
+    }
+
+    /**
+     * @param totals The totals to add the savings from each offer to
+     * @return The basket total in pence
+     */
+    private long priceBasket(final DailyTotals totals) {
+        if (pricingCache != null) {
+            // One lookup for both, as the cached total is just the full price less these savings
+            Offer.AppliedOffers appliedOffers = pricingCache.getAppliedOffers(productCounts);
+            addOfferSavings(appliedOffers, totals);
+            return Product.getPriceInPence(productCounts) - appliedOffers.getTotalSavings();
+        }
+        // Offers are applied one by one rather than through Offer.applyAllOffers so nothing is allocated per basket
+        long savings = 0;
+        for (Offer offer : OFFERS) {
+            long saving = offer.getSaving(productCounts);
+            totals.addOfferSavings(offer, saving);
+            savings += saving;
+        }
+        return Product.getPriceInPence(productCounts) - savings;
+    }
+
+    /**
+     * Adds the savings from offers applied by the cache. Only the built in {@link Offer} constants have a place in the
+     * totals, so savings from data driven rules are left out of the per offer breakdown, though not the basket total,
+     * even when a rule has the same name as a constant.
+     */
+    private static void addOfferSavings(final Offer.AppliedOffers appliedOffers, final DailyTotals totals) {
+        for (int applied = 0; applied < appliedOffers.size(); applied++) {
+            Offer offer = appliedOffers.getOffer(applied);
+            if (offer != null) {
+                totals.addOfferSavings(offer, appliedOffers.getTotalSaving(applied));
+            }
+        }
+    }
+
+    /**
+     * Reads a varint written by {@link BasketLogWriter#putVarint(java.nio.ByteBuffer, int)}
+     *
+     * @throws IOException If it runs past the {@link BasketLogWriter#MAX_VARINT_SIZE} bytes any int fits in
+     */
+    static int getVarint(final ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int size = 0; size < BasketLogWriter.MAX_VARINT_SIZE; size++) {
+            byte next = buffer.get();
+            value |= (next & 0x7F) << (7 * size);
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint longer than " + BasketLogWriter.MAX_VARINT_SIZE + " bytes");
+    }
+}
@@ -0,0 +1,229 @@
+package com.martynhaigh.checkout;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes baskets to a compact binary log which {@link BasketLogPricer} can price without parsing any item names.
+ * <p>
+ * The log starts with a header of the magic number {@code BSKT}, the format version, the number of products the
+ * ordinals refer to and the number of baskets. Each basket follows as an unsigned LEB128 varint holding the length of
+ * the encoded basket in bytes, shifted left once with the encoding in the low bit, then the items themselves in one of
+ * two encodings:
+ * <ul>
+ * <li>{@link #ORDINALS}, one byte per item holding its {@link Product#ordinal()}</li>
+ * <li>{@link #RUNS}, one byte ordinal and a varint quantity for each run of identical items</li>
+ * </ul>
+ * Both keep the order the items were scanned in, and the writer picks whichever is smaller for each basket.
+ */
+public class BasketLogWriter implements Closeable {
+
+    static final int MAGIC = 0x42534B54; // "BSKT"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 3 * Integer.BYTES + Long.BYTES;
+    static final int ORDINALS = 0;
+    static final int RUNS = 1;
+    static final int MAX_VARINT_SIZE = 5;
+    // Leaves room for the encoding bit, and keeps any basket well inside a window mapped by the pricer
+    static final int MAX_BASKET_SIZE = 1 << 28;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BASKET_COUNT_POSITION = 3 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // The ordinals of the items in the current basket, in the order they were added
+    private byte[] items = new byte[64];
+    private int itemCount;
+    private ByteBuffer encodedBasket = ByteBuffer.allocate(128);
+    private long basketCount;
+
+    /**
+     * Creates a log, replacing any existing file
+     *
+     * @param file The file to write the log to
+     * @throws IOException If the file can't be created
+     */
+    public BasketLogWriter(final Path file) throws IOException {
+        if (Product.values().length > 256) {
+            throw new IllegalStateException("Product ordinals don't fit in a byte");
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        // The basket count is filled in on close
+        writeBuffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(Product.values().length).putLong(0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BasketLogWriter <text baskets> <basket log>");
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.US_ASCII)) {
+            System.out.println(convert(reader, Paths.get(args[1])) + " baskets written");
+        }
+    }
+
+    /**
+     * Converts baskets in the text format read by {@link BatchPricer} to a log. Item names are matched against the
+     * active {@link Catalogue}, as {@link BatchPricer} does, and names which don't match are dropped.
+     *
+     * @param text The text baskets, one per line with item names separated by commas
+     * @param file The file to write the log to
+     * @return The number of baskets written
+     * @throws IOException If reading or writing fails
+     */
+    public static long convert(final Reader text, final Path file) throws IOException {
+        BufferedReader lines = text instanceof BufferedReader ? (BufferedReader) text : new BufferedReader(text);
+        try (BasketLogWriter writer = new BasketLogWriter(file)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                int start = 0;
+                while (start <= line.length()) {
+                    int end = line.indexOf(',', start);
+                    if (end == -1) {
+                        end = line.length();
+                    }
+                    Product product = Checkout.parseItemName(line.subSequence(start, end));
+                    if (product != null) {
+                        writer.addItem(product);
+                    }
+                    start = end + 1;
+                }
+                writer.endBasket();
+            }
+            return writer.basketCount;
+        }
+    }
+
+    /**
+     * Adds an item to the current basket
+     *
+     * @param product The product scanned
+     */
+    public void addItem(final Product product) {
+        if (itemCount == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+        }
+        items[itemCount++] = (byte) product.ordinal();
+    }
+
+    /**
+     * Writes the current basket to the log and starts a new, empty one
+     *
+     * @throws IOException If writing fails
+     */
+    public void endBasket() throws IOException {
+        int runsSize = 0;
+        for (int start = 0, end; start < itemCount; start = end) {
+            end = endOfRun(start);
+            runsSize += 1 + varintSize(end - start);
+        }
+
+        int encoding = runsSize < itemCount ? RUNS : ORDINALS;
+        int encodedSize = encoding == RUNS ? runsSize : itemCount;
+        if (encodedSize > MAX_BASKET_SIZE) {
+            throw new IllegalArgumentException("Basket of " + itemCount + " items is too large to log");
+        }
+        if (encodedBasket.capacity() < MAX_VARINT_SIZE + encodedSize) {
+            encodedBasket = ByteBuffer.allocate(Math.max(MAX_VARINT_SIZE + encodedSize, encodedBasket.capacity() * 2));
+        }
+        encodedBasket.clear();
+        putVarint(encodedBasket, encodedSize << 1 | encoding);
+        if (encoding == RUNS) {
+            for (int start = 0, end; start < itemCount; start = end) {
+                end = endOfRun(start);
+                encodedBasket.put(items[start]);
+                putVarint(encodedBasket, end - start);
+            }
+        } else {
+            encodedBasket.put(items, 0, itemCount);
+        }
+        encodedBasket.flip();
+
+        if (encodedBasket.remaining() > writeBuffer.remaining()) {
+            flush();
+        }
+        if (encodedBasket.remaining() > writeBuffer.remaining()) {
+            writeFully(encodedBasket);
+        } else {
+            writeBuffer.put(encodedBasket);
+        }
+
+        itemCount = 0;
+        basketCount++;
+    }
+
+    private int endOfRun(final int start) {
+        int end = start + 1;
+        while (end < itemCount && items[end] == items[start]) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return The number of baskets written so far
+     */
+    public long getBasketCount() {
+        return basketCount;
+    }
+
+    /**
+     * Writes any buffered baskets and the basket count, then closes the file. An unfinished basket is discarded.
+     *
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+            count.putLong(0, basketCount);
+            while (count.hasRemaining()) {
+                channel.write(count, BASKET_COUNT_POSITION + count.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        writeFully(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static int varintSize(final int value) {
+        int size = 1;
+        for (int remaining = value >>> 7; remaining != 0; remaining >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarint(final ByteBuffer buffer, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            buffer.put((byte) (remaining & 0x7F | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+}
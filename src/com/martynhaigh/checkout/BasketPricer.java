@@ -0,0 +1,131 @@
+package com.martynhaigh.checkout;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Thread safe service pricing many independent baskets in parallel on its own {@link ForkJoinPool}
+ */
+public class BasketPricer implements AutoCloseable {
+
+    // Below this many baskets a task prices them itself rather than splitting further
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism The number of threads to price baskets with
+     */
+    public BasketPricer(final int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Prices every basket, applying all offers to each one independently
+     *
+     * @param baskets The baskets to price, null items within a basket are ignored
+     * @return The total of each basket and the savings from each offer across all baskets
+     */
+    public PricedBaskets price(final List<List<Product>> baskets) {
+        long[] basketTotals = new long[baskets.size()];
+        DailyTotals totals = pool.invoke(new PriceTask(baskets, basketTotals, 0, baskets.size()));
+        return new PricedBaskets(basketTotals, totals);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Prices a range of baskets, writing each basket total into its slot and returning the totals for the range
+     */
+    private static class PriceTask extends RecursiveTask<DailyTotals> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<Product>> baskets;
+        private final long[] basketTotals;
+        private final int start;
+        private final int end;
+
+        PriceTask(final List<List<Product>> baskets, final long[] basketTotals, final int start, final int end) {
+            this.baskets = baskets;
+            this.basketTotals = basketTotals;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected DailyTotals compute() {
+            if (end - start > SPLIT_THRESHOLD) {
+                int middle = (start + end) >>> 1;
+                PriceTask left = new PriceTask(baskets, basketTotals, start, middle);
+                left.fork();
+                DailyTotals totals = new PriceTask(baskets, basketTotals, middle, end).compute();
+                totals.merge(left.join());
+                return totals;
+            }
+
+            DailyTotals totals = new DailyTotals();
+            Offer[] allOffers = Offer.values();
+            for (int basket = start; basket < end; basket++) {
+                int[] productCounts = Product.countProducts(baskets.get(basket));
+
+                long savings = 0;
+                for (Offer offer : allOffers) {
+                    long saving = offer.getSaving(productCounts);
+                    totals.addOfferSavings(offer, saving);
+                    savings += saving;
+                }
+                basketTotals[basket] = Product.getPriceInPence(productCounts) - savings;
+                totals.addBasket(basketTotals[basket]);
+            }
+            return totals;
+        }
+    }
+
+    /**
+     * Immutable class describing the prices of a batch of baskets
+     */
+    public static class PricedBaskets {
+        private final long[] basketTotals;
+        private final DailyTotals totals;
+
+        PricedBaskets(final long[] basketTotals, final DailyTotals totals) {
+            this.basketTotals = basketTotals;
+            this.totals = totals;
+        }
+
+        /**
+         * @param basket The index of the basket in the priced list
+         * @return The basket total in pence, with offers applied
+         */
+        public long getBasketTotal(final int basket) {
+            return basketTotals[basket];
+        }
+
+        /**
+         * @return The number of baskets priced
+         */
+        public int getBasketCount() {
+            return basketTotals.length;
+        }
+
+        /**
+         * @param offer The offer to look up
+         * @return The savings from the offer across all baskets, in pence
+         */
+        public long getOfferSavings(final Offer offer) {
+            return totals.getOfferSavings(offer);
+        }
+
+        /**
+         * @return The overflow checked totals across all baskets
+         */
+        public DailyTotals getTotals() {
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.martynhaigh.checkout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams baskets from a channel and writes the price of each one as it goes, so memory use stays flat no matter how
+ * large the input is.
+ * <p>
+ * Input is ASCII text with one basket per line and item names separated by commas, for example
+ * {@code Apple, Orange, apple}. Each item name is copied out of the read buffer and looked up in place by
+ * {@link Checkout#parseItemName(CharSequence)}, so it is matched against the active {@link Catalogue} as the
+ * checkout does, and invalid names are skipped.
+ * <p>
+ * Output has one line per input basket, made up of the number of valid items and the total price in pence, separated
+ * by a comma. A {@link PricingCache} can be supplied to avoid repricing baskets with identical contents.
+ */
+public class BatchPricer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte ITEM_SEPARATOR = ',';
+    private static final byte BASKET_SEPARATOR = '\n';
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // The current item name, only as long as the longest product name as anything longer can't match
+    private final byte[] itemName = new byte[ProductNameParser.MAX_NAME_LENGTH];
+    private int itemNameLength;
+    private boolean itemNameTooLong;
+    private final CharSequence itemNameView = new ItemNameView();
+
+    // The current basket, indexed by Product.ordinal()
+    private final int[] productCounts = new int[Product.values().length];
+    private boolean basketStarted;
+
+    private final PricingCache pricingCache;
+    private DailyTotals totals = new DailyTotals();
+
+    public BatchPricer() {
+        this(null);
+    }
+
+    /**
+     * @param pricingCache The cache to price baskets through, or null to price every basket
+     */
+    public BatchPricer(final PricingCache pricingCache) {
+        this.pricingCache = pricingCache;
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (ReadableByteChannel in = args.length > 0 ? FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ) : Channels.newChannel(System.in);
+             WritableByteChannel out = Channels.newChannel(System.out)) {
+            new BatchPricer().price(in, out);
+        }
+    }
+
+    /**
+     * Prices every basket read from a channel, writing the results to another channel as they are calculated
+     *
+     * @param in  The channel to read baskets from
+     * @param out The channel to write basket prices to
+     * @return The number of baskets priced
+     * @throws IOException If reading or writing fails
+     */
+    public long price(final ReadableByteChannel in, final WritableByteChannel out) throws IOException {
+        long basketCount = 0;
+        totals = new DailyTotals();
+        resetBasket();
+        readBuffer.clear();
+        writeBuffer.clear();
+
+        while (in.read(readBuffer) != -1) {
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                byte value = readBuffer.get();
+                if (value == BASKET_SEPARATOR) {
+                    endBasket(out);
+                    basketCount++;
+                } else if (value == ITEM_SEPARATOR) {
+                    endItem();
+                } else {
+                    appendToItem(value);
+                }
+            }
+            readBuffer.clear();
+        }
+
+        // The last basket may not be terminated by a new line
+        if (basketStarted) {
+            endBasket(out);
+            basketCount++;
+        }
+
+        flush(out);
+        return basketCount;
+    }
+
+    private void appendToItem(final byte value) {
+        basketStarted = true;
+        if (itemNameLength < itemName.length) {
+            // Skip leading whitespace, trailing whitespace is trimmed by the parser
+            if (itemNameLength > 0 || (value & 0xFF) > ' ') {
+                itemName[itemNameLength++] = value;
+            }
+        } else if ((value & 0xFF) > ' ') {
+            itemNameTooLong = true;
+        }
+    }
+
+    private void endItem() {
+        basketStarted = true;
+        if (itemNameTooLong) {
+            PricingMetrics.invalidNameRejected();
+        } else if (itemNameLength > 0) {
+            Product product = Checkout.parseItemName(itemNameView);
+            if (product != null) {
+                productCounts[product.ordinal()]++;
+            }
+        }
+        itemNameLength = 0;
+        itemNameTooLong = false;
+    }
+
+    private void endBasket(final WritableByteChannel out) throws IOException {
+        endItem();
+
+        int itemCount = 0;
+        for (int count : productCounts) {
+            itemCount += count;
+        }
+        long total = pricingCache != null
+                ? pricingCache.getTotalCost(productCounts)
+                : Product.getPriceInPence(productCounts) - Offer.applyAllOffers(productCounts).getTotalSavings();
+
+        totals.addBasket(total);
+
+        // Leave room for two numbers, a separator and a new line
+        if (writeBuffer.remaining() < 48) {
+            flush(out);
+        }
+        writeNumber(writeBuffer, itemCount);
+        writeBuffer.put(ITEM_SEPARATOR);
+        writeNumber(writeBuffer, total);
+        writeBuffer.put(BASKET_SEPARATOR);
+
+        resetBasket();
+    }
+
+    private void resetBasket() {
+        Arrays.fill(productCounts, 0);
+        itemNameLength = 0;
+        itemNameTooLong = false;
+        basketStarted = false;
+    }
+
+    /**
+     * Writes a number in decimal ASCII without creating a String
+     *
+     * @param buffer The buffer to write to, which must have room for 20 bytes
+     * @param value  The number to write
+     */
+    static void writeNumber(final ByteBuffer buffer, final long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        // Compared on both sides rather than with Math.abs, which leaves Long.MIN_VALUE negative
+        long divisor = 1;
+        while (value / divisor >= 10 || value / divisor <= -10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + Math.abs(value / divisor % 10)));
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * @return The overflow checked totals of the baskets priced by the last call to
+     * {@link #price(ReadableByteChannel, WritableByteChannel)}
+     */
+    public DailyTotals getTotals() {
+        return totals;
+    }
+
+    private void flush(final WritableByteChannel out) throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            out.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * The current item name as ASCII characters, so it can be looked up without creating a String
+     */
+    private final class ItemNameView implements CharSequence {
+        @Override
+        public int length() {
+            return itemNameLength;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) (itemName[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(itemName, 0, itemNameLength, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.martynhaigh.checkout;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Quantity based cart, storing a count per {@link Product} rather than a reference per unit scanned.
+ * The total cost and offer savings are kept up to date on every add and remove, at the prices of the catalogue they
+ * were worked out with. If the active {@link Catalogue} has changed since, the totals are first worked out again from
+ * the counts, so the whole cart is always priced at one catalogue's prices.
+ */
+public class Cart {
+
+    private static final Offer[] OFFERS = Offer.values();
+
+    // Indexed by Product.ordinal()
+    private final int[] productCounts = new int[Product.values().length];
+    private int size;
+    private long baseTotal;
+    private long totalSavings;
+    // The catalogue the running totals were worked out with
+    private Catalogue pricedWith = Catalogue.getActive();
+
+    public Cart() {
+    }
+
+    /**
+     * Restores a cart from previously saved quantities. The totals are worked out again at the active catalogue's
+     * prices when the cart is first changed or read, as prices may have changed since the quantities were saved.
+     *
+     * @param productCounts The quantity of each product, indexed by {@link Product#ordinal()}
+     */
+    Cart(final int[] productCounts) {
+        if (productCounts.length != this.productCounts.length) {
+            throw new IllegalArgumentException("Expected counts for " + this.productCounts.length + " products but got " + productCounts.length);
+        }
+        for (int product = 0; product < productCounts.length; product++) {
+            if (productCounts[product] < 0) {
+                throw new IllegalArgumentException("Quantity must not be negative: " + productCounts[product]);
+            }
+            this.productCounts[product] = productCounts[product];
+            size = addQuantity(size, productCounts[product]);
+        }
+        pricedWith = null;
+    }
+
+    /**
+     * Adds a number of units of a product to the cart
+     *
+     * @param product  The product to add, null values are ignored
+     * @param quantity The number of units to add
+     * @throws IllegalArgumentException If the quantity is negative or the cart would hold more than
+     *                                  {@link Integer#MAX_VALUE} units
+     */
+    public void add(final Product product, final int quantity) {
+        PricingMetrics.offersApplied(addUncounted(product, quantity));
+    }
+
+    /**
+     * Adds a number of units of a product to the cart without counting the offers applied in {@link PricingMetrics},
+     * for callers which count a batch of adds at once
+     *
+     * @param product  The product to add, null values are ignored
+     * @param quantity The number of units to add
+     * @return The change in the number of times offers apply
+     * @throws IllegalArgumentException If the quantity is negative or the cart would hold more than
+     *                                  {@link Integer#MAX_VALUE} units
+     */
+    int addUncounted(final Product product, final int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        if (product == null) {
+            return 0;
+        }
+        // Checked before anything changes, so a rejected add leaves the cart as it was
+        addQuantity(productCounts[product.ordinal()], quantity);
+        addQuantity(size, quantity);
+        repriceIfCatalogueChanged();
+        return update(product, quantity);
+    }
+
+    /**
+     * @return The sum of a count and a quantity added to it
+     * @throws IllegalArgumentException If the sum doesn't fit in an int
+     */
+    private static int addQuantity(final int count, final int quantity) {
+        try {
+            return Math.addExact(count, quantity);
+        } catch (final ArithmeticException e) {
+            throw new IllegalArgumentException("Cannot add " + quantity + " to " + count + ", a cart holds at most " + Integer.MAX_VALUE + " units");
+        }
+    }
+
+    /**
+     * Removes a number of units of a product from the cart
+     *
+     * @param product  The product to remove, null values are ignored
+     * @param quantity The number of units to remove
+     */
+    public void remove(final Product product, final int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        if (product == null) {
+            return;
+        }
+        repriceIfCatalogueChanged();
+        if (quantity > productCounts[product.ordinal()]) {
+            throw new IllegalArgumentException("Cannot remove " + quantity + " of " + product + ", cart only contains " + productCounts[product.ordinal()]);
+        }
+        PricingMetrics.offersApplied(update(product, -quantity));
+    }
+
+    /**
+     * Removes everything from the cart, as when a transaction is voided
+     */
+    public void clear() {
+        Arrays.fill(productCounts, 0);
+        size = 0;
+        baseTotal = 0;
+        totalSavings = 0;
+        pricedWith = Catalogue.getActive();
+    }
+
+    /**
+     * Works the running totals out again from the counts if the active catalogue has changed since they were last
+     * worked out. The catalogue is read first, so a change part way through is caught by the next check.
+     */
+    private void repriceIfCatalogueChanged() {
+        Catalogue active = Catalogue.getActive();
+        if (active == pricedWith) {
+            return;
+        }
+        pricedWith = active;
+        baseTotal = Product.getPriceInPence(productCounts);
+        long start = PricingMetrics.start();
+        totalSavings = 0;
+        for (Offer offer : OFFERS) {
+            totalSavings += offer.getSaving(productCounts);
+        }
+        PricingMetrics.recordStage(PricingMetrics.Stage.APPLY_OFFERS, start);
+    }
+
+    /**
+     * Updates the count and running totals, leaving the metrics to the caller as this runs on every add and remove
+     *
+     * @return The change in the number of times offers apply
+     */
+    private int update(final Product product, final int quantity) {
+        int offersApplied = 0;
+        for (Offer offer : OFFERS) {
+            int timesApplied = offer.timesAppliedDelta(productCounts, product, quantity);
+            offersApplied += timesApplied;
+            totalSavings += timesApplied * offer.getSavingEachTime();
+        }
+        productCounts[product.ordinal()] += quantity;
+        baseTotal += quantity * product.getPriceInPence();
+        size += quantity;
+        return offersApplied;
+    }
+
+    /**
+     * Get the number of units of a product in the cart
+     *
+     * @param product The product to look up
+     * @return The number of units
+     */
+    public int getQuantity(final Product product) {
+        return productCounts[product.ordinal()];
+    }
+
+    /**
+     * Get the quantity of every product in the cart
+     *
+     * @return A copy of the product counts, indexed by {@link Product#ordinal()}
+     */
+    public int[] getProductCounts() {
+        return productCounts.clone();
+    }
+
+    /**
+     * @return The total number of units in the cart
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the cart total price, with offers applied
+     *
+     * @return total price in pennies
+     */
+    public long getTotalCost() {
+        repriceIfCatalogueChanged();
+        return baseTotal - totalSavings;
+    }
+
+    /**
+     * @return The savings from all offers currently applied to the cart, in pence
+     */
+    public long getTotalSavings() {
+        repriceIfCatalogueChanged();
+        return totalSavings;
+    }
+
+    /**
+     * Returns a read only view of the cart, expanding the counts into individual units only as they are accessed
+     *
+     * @return A list with one entry per unit in the cart, grouped by {@link Product}
+     */
+    public List<Product> asList() {
+        return new AbstractList<Product>() {
+            @Override
+            public Product get(int index) {
+                if (index < 0) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                for (Product product : Product.values()) {
+                    int count = productCounts[product.ordinal()];
+                    if (index < count) {
+                        return product;
+                    }
+                    index -= count;
+                }
+                throw new IndexOutOfBoundsException("Index out of range for cart of size " + size);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,384 @@
+package com.martynhaigh.checkout;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link Cart} which survives a crash, by appending every change to a journal before it is acknowledged.
+ * <p>
+ * Each event is a fixed size record of its sequence number, quantity, product ordinal and type. Appends are buffered
+ * and made durable by {@link #commit()} with a single write and force for everything appended since the last commit.
+ * Threads sharing a journal commit as a group: while one thread forces the file, the others queue up behind it, and
+ * the next force covers all of their events at once.
+ * <p>
+ * Every {@code snapshotInterval} events the quantities and running totals are written to a snapshot file, replaced
+ * atomically, and the journal is started again. Recovery loads the snapshot and replays only the journal written
+ * since, skipping any events the snapshot already covers and dropping a record left half written by a crash. The
+ * recovered cart is priced at the active catalogue's prices rather than the snapshot's totals, which are only kept for
+ * anyone inspecting the file.
+ */
+public class CartJournal implements Closeable {
+
+    /**
+     * The changes which can be made to a cart
+     */
+    enum EventType {
+        ADD, REMOVE, VOID
+    }
+
+    static final String JOURNAL_FILE = "cart.journal";
+    static final String SNAPSHOT_FILE = "cart.snapshot";
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Short.BYTES + 2;
+
+    private static final int SNAPSHOT_MAGIC = 0x43534E50; // "CSNP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final Product[] PRODUCTS = Product.values();
+
+    private final Path directory;
+    private final long snapshotInterval;
+    private final FileChannel journal;
+    private Cart cart;
+
+    // Appended events waiting to be committed, swapped with the spare while a commit writes them
+    private ByteBuffer pending = ByteBuffer.allocateDirect(BATCH_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocateDirect(BATCH_SIZE);
+
+    // Guarded by this
+    private long lastSequence;
+    private long committedSequence;
+    private long snapshotSequence;
+    private boolean committing;
+    // Once a batch fails to be written the journal has a gap, so nothing more can be appended after it
+    private volatile IOException failure;
+
+    // Only used by the thread leading a commit, or with the lock held while none is in progress
+    private long writePosition;
+
+    private CartJournal(final Path directory, final long snapshotInterval) throws IOException {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("The snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        journal = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            recover();
+        } catch (final IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the journal in a directory, recovering the cart it holds or starting an empty one
+     *
+     * @param directory        The directory holding the journal and snapshot, created if needed
+     * @param snapshotInterval The number of events between snapshots
+     * @return The journal, positioned to append after the last complete event
+     * @throws IOException If the files can't be read or the snapshot is corrupt
+     */
+    public static CartJournal open(final Path directory, final long snapshotInterval) throws IOException {
+        return new CartJournal(directory, snapshotInterval);
+    }
+
+    private void recover() throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+            if (snapshot.remaining() < 3 * Integer.BYTES + Long.BYTES || snapshot.getInt() != SNAPSHOT_MAGIC
+                    || snapshot.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a cart snapshot: " + snapshotFile);
+            }
+            snapshotSequence = snapshot.getLong();
+            int[] productCounts = new int[snapshot.getInt()];
+            if (productCounts.length != PRODUCTS.length || snapshot.remaining() != productCounts.length * Integer.BYTES + 2 * Long.BYTES) {
+                throw new IOException("Cart snapshot " + snapshotFile + " was written for a different set of products");
+            }
+            for (int product = 0; product < productCounts.length; product++) {
+                productCounts[product] = snapshot.getInt();
+            }
+            // The saved totals are skipped, as the cart is priced again at the active catalogue's prices
+            cart = new Cart(productCounts);
+        } else {
+            cart = new Cart();
+        }
+
+        lastSequence = snapshotSequence;
+        ByteBuffer records = ByteBuffer.allocateDirect(BATCH_SIZE);
+        long readPosition = 0;
+        long validLength = 0;
+        boolean replayed = false;
+        replay:
+        while (true) {
+            int read = journal.read(records, readPosition);
+            if (read <= 0) {
+                break;
+            }
+            readPosition += read;
+            records.flip();
+            while (records.remaining() >= RECORD_SIZE) {
+                long sequence = records.getLong();
+                int quantity = records.getInt();
+                int product = records.getShort();
+                int type = records.get();
+                records.get();
+                // Events the snapshot covers are left over from a crash before the journal was restarted
+                if (sequence > snapshotSequence) {
+                    // Anything out of sequence is the remains of a record half written by a crash
+                    if (sequence != lastSequence + 1 || type < 0 || type >= EVENT_TYPES.length || product < 0 || product >= PRODUCTS.length) {
+                        break replay;
+                    }
+                    apply(EVENT_TYPES[type], PRODUCTS[product], quantity);
+                    lastSequence = sequence;
+                    replayed = true;
+                }
+                validLength += RECORD_SIZE;
+            }
+            records.compact();
+        }
+
+        // Drop stale events and anything after the last complete event, so new events follow straight on from it
+        writePosition = replayed ? validLength : 0;
+        journal.truncate(writePosition);
+        committedSequence = lastSequence;
+    }
+
+    private void apply(final EventType type, final Product product, final int quantity) {
+        switch (type) {
+            case ADD:
+                cart.add(product, quantity);
+                break;
+            case REMOVE:
+                cart.remove(product, quantity);
+                break;
+            case VOID:
+                cart.clear();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported event type " + type);
+        }
+    }
+
+    /**
+     * Adds a number of units of a product to the cart, journalling the change
+     *
+     * @param product  The product to add, null values are ignored and not journalled
+     * @param quantity The number of units to add
+     * @return The sequence number of the event, to pass to {@link #commit(long)}, or the last sequence if ignored
+     * @throws IOException If the journal can't be written
+     */
+    public long add(final Product product, final int quantity) throws IOException {
+        return append(EventType.ADD, product, quantity);
+    }
+
+    /**
+     * Removes a number of units of a product from the cart, journalling the change
+     *
+     * @param product  The product to remove, null values are ignored and not journalled
+     * @param quantity The number of units to remove
+     * @return The sequence number of the event, to pass to {@link #commit(long)}, or the last sequence if ignored
+     * @throws IOException If the journal can't be written
+     */
+    public long remove(final Product product, final int quantity) throws IOException {
+        return append(EventType.REMOVE, product, quantity);
+    }
+
+    /**
+     * Empties the cart, journalling the change
+     *
+     * @return The sequence number of the event, to pass to {@link #commit(long)}
+     * @throws IOException If the journal can't be written
+     */
+    public long voidCart() throws IOException {
+        return append(EventType.VOID, PRODUCTS[0], 0);
+    }
+
+    private long append(final EventType type, final Product product, final int quantity) throws IOException {
+        long sequence;
+        boolean snapshotDue;
+        synchronized (this) {
+            if (product == null) {
+                return lastSequence;
+            }
+            checkNotFailed();
+            while (pending.remaining() < RECORD_SIZE) {
+                // A full batch is committed straight away, holding the lock so nothing else is applied meanwhile
+                commit(lastSequence);
+            }
+            // Applied before it is journalled, so changes the cart rejects never reach the journal
+            apply(type, product, quantity);
+            sequence = ++lastSequence;
+            pending.putLong(sequence).putInt(quantity).putShort((short) product.ordinal()).put((byte) type.ordinal()).put((byte) 0);
+            snapshotDue = sequence - snapshotSequence >= snapshotInterval;
+        }
+        if (snapshotDue) {
+            snapshot();
+        }
+        return sequence;
+    }
+
+    /**
+     * Makes every event appended so far durable
+     *
+     * @throws IOException If the journal can't be written
+     */
+    public void commit() throws IOException {
+        commit(getLastSequence());
+    }
+
+    /**
+     * Makes an event and every event before it durable, sharing a write and force with any other threads committing
+     *
+     * @param sequence The sequence number returned when the event was appended
+     * @throws IOException If the journal can't be written
+     */
+    public void commit(final long sequence) throws IOException {
+        while (true) {
+            ByteBuffer batch;
+            long batchSequence;
+            synchronized (this) {
+                while (committing && committedSequence < sequence) {
+                    waitForCommit();
+                }
+                if (committedSequence >= sequence) {
+                    return;
+                }
+                checkNotFailed();
+                // Lead the next commit, taking everything appended so far while appends carry on into the spare
+                committing = true;
+                batch = pending;
+                pending = spare;
+                spare = null;
+                batchSequence = lastSequence;
+            }
+
+            boolean written = false;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    writePosition += journal.write(batch, writePosition);
+                }
+                journal.force(false);
+                written = true;
+            } catch (final IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                synchronized (this) {
+                    if (written) {
+                        committedSequence = batchSequence;
+                    }
+                    batch.clear();
+                    spare = batch;
+                    committing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        if (failure != null) {
+            throw new IOException("An earlier commit failed, reopen the journal to recover the committed events", failure);
+        }
+    }
+
+    private void waitForCommit() throws IOException {
+        try {
+            wait();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the journal to commit", e);
+        }
+    }
+
+    /**
+     * Commits, then writes the quantities and running totals to a new snapshot and restarts the journal
+     *
+     * @throws IOException If the snapshot or journal can't be written
+     */
+    public synchronized void snapshot() throws IOException {
+        // With everything committed under the lock no other commit can be writing while the journal restarts
+        commit(lastSequence);
+        if (lastSequence == snapshotSequence) {
+            return;
+        }
+
+        int productCount = PRODUCTS.length;
+        ByteBuffer snapshot = ByteBuffer.allocate(3 * Integer.BYTES + Long.BYTES + productCount * Integer.BYTES + 2 * Long.BYTES);
+        snapshot.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(lastSequence).putInt(productCount);
+        for (Product product : PRODUCTS) {
+            snapshot.putInt(cart.getQuantity(product));
+        }
+        snapshot.putLong(cart.getTotalCost() + cart.getTotalSavings()).putLong(cart.getTotalSavings()).flip();
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // The rename is only durable once the directory is, otherwise a crash could bring back the old snapshot
+        // alongside the emptied journal
+        forceDirectory(directory);
+
+        // Only now the snapshot is in place can the events it covers be dropped
+        snapshotSequence = lastSequence;
+        journal.truncate(0);
+        writePosition = 0;
+    }
+
+    /**
+     * Forces a directory's entries to disk, such as a file just renamed into it. Windows can't open a directory as a
+     * channel, but also makes renames durable without being asked, so it is skipped there.
+     */
+    private static void forceDirectory(final Path directory) throws IOException {
+        if (File.separatorChar == '\\') {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return The cart as of the last event appended. Change it only through the journal, or changes will be lost, and
+     * read it only while no other thread is appending.
+     */
+    public Cart getCart() {
+        return cart;
+    }
+
+    /**
+     * @return The sequence number of the last event appended
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Commits any pending events and closes the journal
+     *
+     * @throws IOException If the journal can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.martynhaigh.checkout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable product catalogue mapping names to SKUs and SKUs to prices, sized for millions of entries.
+ * <p>
+ * Names are held as a sorted table of upper case ASCII strings in a single off heap or memory mapped buffer, and
+ * prices in a primitive int array indexed by SKU, so a catalogue adds next to nothing to the garbage collector's
+ * workload. A SKU is the position of its name in the sorted table.
+ * <p>
+ * The active catalogue decides {@link Product} prices and which names {@link Checkout#parseItemName(CharSequence)}
+ * recognises. The built in catalogue is seeded from the {@link Product} constants. Changing the active catalogue
+ * reprices every item in a {@link Cart}, including those already scanned, the next time the cart is changed or read.
+ */
+public final class Catalogue {
+
+    private static final int MAGIC = 0x4341544C; // "CATL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final Product[] PRODUCTS = Product.values();
+
+    private static volatile Catalogue active = builtIn();
+
+    // Name n is in names from nameOffsets[n] until nameOffsets[n + 1]
+    private final ByteBuffer names;
+    private final IntBuffer nameOffsets;
+    private final int[] prices;
+
+    // The SKU of each Product, or -1 if it isn't in this catalogue
+    private final int[] productSkus;
+
+    private Catalogue(final ByteBuffer names, final IntBuffer nameOffsets, final int[] prices) {
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.prices = prices;
+
+        productSkus = new int[Product.values().length];
+        for (Product product : Product.values()) {
+            productSkus[product.ordinal()] = findSku(product.name());
+        }
+    }
+
+    /**
+     * @return The catalogue currently used to resolve product names and prices
+     */
+    public static Catalogue getActive() {
+        return active;
+    }
+
+    /**
+     * Replaces the catalogue used to resolve product names and prices, e.g. after a daily reprice
+     *
+     * @param catalogue The new catalogue
+     */
+    public static void setActive(final Catalogue catalogue) {
+        if (catalogue == null) {
+            throw new IllegalArgumentException("Catalogue must not be null");
+        }
+        active = catalogue;
+    }
+
+    /**
+     * @return A catalogue containing each {@link Product} at its built in price
+     */
+    public static Catalogue builtIn() {
+        Builder builder = new Builder();
+        for (Product product : Product.values()) {
+            builder.add(product.name(), Math.toIntExact(product.getSeedPriceInPence()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Memory maps a catalogue previously saved with {@link #write(Path)}. Names stay in the mapped file and only the
+     * prices are copied on to the heap.
+     *
+     * @param file The catalogue file
+     * @return The catalogue
+     * @throws IOException If the file can't be read or isn't a catalogue
+     */
+    public static Catalogue load(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a catalogue file: " + file);
+            }
+            int size = buffer.getInt();
+            int namesLength = buffer.getInt();
+            if (size < 0 || namesLength < 0 || channel.size() != HEADER_SIZE + (2L * size + 1) * Integer.BYTES + namesLength) {
+                throw new IOException("Catalogue file " + file + " has " + channel.size() + " bytes, which doesn't match "
+                        + size + " SKUs with " + namesLength + " bytes of names");
+            }
+
+            IntBuffer nameOffsets = slice(buffer, (size + 1) * Integer.BYTES).asIntBuffer();
+            // Offsets are checked once here so lookups never read outside the names
+            for (int sku = 0; sku <= size; sku++) {
+                int offset = nameOffsets.get(sku);
+                if (offset < (sku == 0 ? 0 : nameOffsets.get(sku - 1)) || offset > namesLength || (sku == 0 && offset != 0)
+                        || (sku == size && offset != namesLength)) {
+                    throw new IOException("Catalogue file " + file + " has a corrupt name offset for SKU " + sku);
+                }
+            }
+            int[] prices = new int[size];
+            slice(buffer, size * Integer.BYTES).asIntBuffer().get(prices);
+            ByteBuffer names = slice(buffer, namesLength);
+            return new Catalogue(names, nameOffsets, prices);
+        }
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    /**
+     * Saves the catalogue in a form which can be memory mapped by {@link #load(Path)}
+     *
+     * @param file The file to write
+     * @throws IOException If the file can't be written
+     */
+    public void write(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(size()).putInt(names.limit()).flip();
+            writeFully(channel, header);
+
+            ByteBuffer offsets = ByteBuffer.allocateDirect((size() + 1) * Integer.BYTES);
+            offsets.asIntBuffer().put(nameOffsets.duplicate());
+            writeFully(channel, offsets);
+
+            ByteBuffer priceBuffer = ByteBuffer.allocateDirect(size() * Integer.BYTES);
+            priceBuffer.asIntBuffer().put(prices);
+            writeFully(channel, priceBuffer);
+
+            writeFully(channel, names.duplicate());
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return The number of SKUs in the catalogue
+     */
+    public int size() {
+        return prices.length;
+    }
+
+    /**
+     * Looks up a SKU by name without allocating. Matches are case insensitive and ignore leading and trailing
+     * whitespace.
+     *
+     * @param name The name to look up
+     * @return The SKU, or -1 if there is no match
+     */
+    public int findSku(final CharSequence name) {
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, name, start, end);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the name of a SKU with a range of characters, upper casing the characters as they are read
+     */
+    private int compare(final int sku, final CharSequence name, final int start, final int end) {
+        int offset = nameOffsets.get(sku);
+        int length = nameOffsets.get(sku + 1) - offset;
+        int nameLength = end - start;
+        for (int i = 0; i < length && i < nameLength; i++) {
+            int difference = (names.get(offset + i) & 0xFF) - Character.toUpperCase(name.charAt(start + i));
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - nameLength;
+    }
+
+    /**
+     * @param sku The SKU to look up
+     * @return The price in pence
+     */
+    public long getPriceInPence(final int sku) {
+        return prices[sku];
+    }
+
+    /**
+     * @param sku The SKU to look up
+     * @return The upper case name of the SKU
+     */
+    public String getName(final int sku) {
+        int offset = nameOffsets.get(sku);
+        byte[] name = new byte[nameOffsets.get(sku + 1) - offset];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = names.get(offset + i);
+        }
+        return new String(name, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Looks up a {@link Product} by name without allocating
+     *
+     * @param name The name to look up, case insensitive and ignoring leading and trailing whitespace
+     * @return The product, or null if the name isn't in the catalogue or isn't a {@link Product}
+     */
+    public Product findProduct(final CharSequence name) {
+        int sku = findSku(name);
+        if (sku >= 0) {
+            // There are only a handful of products, so scanning them beats holding a reverse table the size of the catalogue
+            for (int product = 0; product < productSkus.length; product++) {
+                if (productSkus[product] == sku) {
+                    return PRODUCTS[product];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param product The product to look up
+     * @return The catalogue price of the product, or its built in price if it isn't in the catalogue
+     */
+    public long getPriceInPence(final Product product) {
+        int sku = productSkus[product.ordinal()];
+        return sku < 0 ? product.getSeedPriceInPence() : prices[sku];
+    }
+
+    /**
+     * Collects names and prices, then sorts them into a {@link Catalogue}
+     */
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> prices = new ArrayList<>();
+
+        /**
+         * @param name         The SKU name, which must be ASCII
+         * @param priceInPence The SKU price
+         * @return This builder
+         */
+        public Builder add(final String name, final int priceInPence) {
+            String normalisedName = name.trim().toUpperCase(Locale.ROOT);
+            for (int i = 0; i < normalisedName.length(); i++) {
+                if (normalisedName.charAt(i) > 0x7F) {
+                    throw new IllegalArgumentException("SKU names must be ASCII: " + name);
+                }
+            }
+            if (priceInPence < 0) {
+                throw new IllegalArgumentException("Price must not be negative: " + name + " " + priceInPence);
+            }
+            names.add(normalisedName);
+            prices.add(priceInPence);
+            return this;
+        }
+
+        /**
+         * @return A catalogue held in an off heap buffer
+         */
+        public Catalogue build() {
+            Integer[] order = new Integer[names.size()];
+            int namesLength = 0;
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                namesLength += names.get(i).length();
+            }
+            // Not a lambda, as the built in catalogue is built on every CLI run and lambda bootstrap dominates startup
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer a, final Integer b) {
+                    return names.get(a).compareTo(names.get(b));
+                }
+            });
+
+            ByteBuffer nameBuffer = ByteBuffer.allocateDirect(namesLength);
+            IntBuffer nameOffsets = IntBuffer.allocate(order.length + 1);
+            int[] sortedPrices = new int[order.length];
+            for (int sku = 0; sku < order.length; sku++) {
+                String name = names.get(order[sku]);
+                if (sku > 0 && name.equals(names.get(order[sku - 1]))) {
+                    throw new IllegalArgumentException("Duplicate SKU name: " + name);
+                }
+                nameOffsets.put(sku, nameBuffer.position());
+                nameBuffer.put(name.getBytes(StandardCharsets.US_ASCII));
+                sortedPrices[sku] = prices.get(order[sku]);
+            }
+            nameOffsets.put(order.length, nameBuffer.position());
+            nameBuffer.clear();
+            return new Catalogue(nameBuffer, nameOffsets, sortedPrices);
+        }
+    }
+}
@@ -1,19 +1,35 @@
 package com.martynhaigh.checkout;
 
-import com.sun.istack.internal.Nullable;
+import javax.annotation.Nullable;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Checkout {
 
     static final String CART_PRINTOUT_TEMPLATE = "%d items in cart coming to a total of £%.2f";
     private static final String[] DEFAULT_SHOPPING_LIST = new String[]{"Apple", "Apple", "Orange", "Apple", "Apple"};
-    private List<Product> itemsInCart = new ArrayList<>();
+    private static final String BATCH_ARGUMENT = "--batch";
+    private static final String SERVE_ARGUMENT = "--serve";
+    private static final Product[] PRODUCTS = Product.values();
+    private final Cart itemsInCart = new Cart();
+    private final ReceiptFormatter receiptFormatter = new ReceiptFormatter();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Streams baskets from a file or stdin, e.g. for end of day reconciliation
+        if (args.length > 0 && BATCH_ARGUMENT.equals(args[0])) {
+            BatchPricer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Keeps carts in a long running process, see CheckoutServer for the protocol
+        if (args.length > 0 && SERVE_ARGUMENT.equals(args[0])) {
+            CheckoutServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
-    public static void main(String[] args) {
         Checkout checkout = new Checkout();
 
         // Allows for passing through of items from the CLI
@@ -21,6 +37,10 @@ public class Checkout {
         checkout.addItemsToCart(itemsToAddToCart);
 
         System.out.print(checkout.getPrintout());
+
+        if (PricingMetrics.ENABLED) {
+            System.err.print(PricingMetrics.getInstance().dump());
+        }
     }
 
     /**
@@ -30,7 +50,15 @@ public class Checkout {
      * @return A valid list of {@link Product}
      */
     List<Product> parseShoppingList(final String[] itemsToAddToCart) {
-        return Arrays.stream(itemsToAddToCart).map(this::parseItemName).collect(Collectors.toList());
+        long start = PricingMetrics.start();
+        // A plain loop rather than a stream, as bootstrapping the stream and lambda classes costs more than the CLI's
+        // whole pricing run
+        List<Product> products = new ArrayList<>(itemsToAddToCart.length);
+        for (String itemName : itemsToAddToCart) {
+            products.add(parseItemName(itemName));
+        }
+        PricingMetrics.recordStage(PricingMetrics.Stage.PARSE_SHOPPING_LIST, start);
+        return products;
     }
 
     /**
@@ -39,13 +67,48 @@ public class Checkout {
      * @param itemsToAddToCart An array of case insensitive product names to add to the cart.
      */
     void addItemsToCart(final List<Product> itemsToAddToCart) {
-        // Note: Don't use itemsInCart.addAll as we don't want null values to be added
+        // Note: Cart.add ignores null values so they are never counted
 
         if (itemsToAddToCart == null || itemsToAddToCart.size() == 0) {
             return;
         }
 
-        itemsToAddToCart.stream().filter(product -> product != null).forEach(itemsInCart::add);
+        long start = PricingMetrics.start();
+        int sizeBefore = itemsInCart.size();
+        // Counted first so the offers are worked out once per product rather than once per unit
+        int[] productCounts = Product.countProducts(itemsToAddToCart);
+        int offersApplied = 0;
+        for (int product = 0; product < productCounts.length; product++) {
+            if (productCounts[product] > 0) {
+                offersApplied += itemsInCart.addUncounted(PRODUCTS[product], productCounts[product]);
+            }
+        }
+        PricingMetrics.itemsScanned(itemsInCart.size() - sizeBefore, offersApplied);
+        PricingMetrics.recordStage(PricingMetrics.Stage.ADD_ITEMS_TO_CART, start);
+    }
+
+    /**
+     * Adds a number of units of a single product to the cart.
+     *
+     * @param product  The product to add, null values are ignored
+     * @param quantity The number of units to add
+     */
+    void addItemsToCart(final Product product, final int quantity) {
+        long start = PricingMetrics.start();
+        int sizeBefore = itemsInCart.size();
+        int offersApplied = itemsInCart.addUncounted(product, quantity);
+        PricingMetrics.itemsScanned(itemsInCart.size() - sizeBefore, offersApplied);
+        PricingMetrics.recordStage(PricingMetrics.Stage.ADD_ITEMS_TO_CART, start);
+    }
+
+    /**
+     * Removes a number of units of a single product from the cart.
+     *
+     * @param product  The product to remove, null values are ignored
+     * @param quantity The number of units to remove
+     */
+    void removeItemsFromCart(final Product product, final int quantity) {
+        itemsInCart.remove(product, quantity);
     }
 
     /**
@@ -55,23 +118,22 @@ public class Checkout {
      * @return A valid {@link Product} or null
      */
     @Nullable
-    Product parseItemName(String itemName) {
-        itemName = itemName.toUpperCase().trim();
-        try {
-            return Product.valueOf(itemName);
-        } catch (final IllegalArgumentException e) {
-            // Expected error if the passed in name doesn't match any Product value
-            return null;
+    static Product parseItemName(CharSequence itemName) {
+        // Matches without allocating or throwing, as scanner feeds contain plenty of misreads
+        Product product = Catalogue.getActive().findProduct(itemName);
+        if (product == null) {
+            PricingMetrics.invalidNameRejected();
         }
+        return product;
     }
 
     /**
      * Return all itemsInCart added to cart
      *
-     * @return
+     * @return A read only view with one entry per unit, expanded lazily from the product counts
      */
     List<Product> getCartItems() {
-        return itemsInCart;
+        return itemsInCart.asList();
     }
 
     /**
@@ -79,10 +141,8 @@ public class Checkout {
      *
      * @return total price in pennies
      */
-    int getCartTotalCost() {
-        int cartTotal = itemsInCart.stream().mapToInt(Product::getPriceInPence).sum();
-        int offerSavings = Offer.applyAllOffers(itemsInCart).getTotalSavings();
-        return cartTotal - offerSavings;
+    long getCartTotalCost() {
+        return itemsInCart.getTotalCost();
     }
 
     /**
@@ -91,6 +151,19 @@ public class Checkout {
      * @return A String representation of the total number of items in the cart and total cost in GBP
      */
     String getPrintout() {
-        return String.format(CART_PRINTOUT_TEMPLATE, getCartItems().size(), (float) getCartTotalCost() / 100);
+        long start = PricingMetrics.start();
+        String printout = receiptFormatter.formatSummary(itemsInCart.size(), getCartTotalCost()).toString();
+        PricingMetrics.recordStage(PricingMetrics.Stage.PRINTOUT, start);
+        return printout;
+    }
+
+    /**
+     * Generates an itemised receipt
+     *
+     * @return A line per product and per offer applied, followed by the printout from {@link #getPrintout()}
+     */
+    String getReceipt() {
+        int[] productCounts = itemsInCart.getProductCounts();
+        return receiptFormatter.formatReceipt(productCounts, Offer.applyAllOffers(productCounts)).toString();
     }
 }
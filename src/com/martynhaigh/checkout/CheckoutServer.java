@@ -0,0 +1,319 @@
+package com.martynhaigh.checkout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long running checkout, so many carts can be priced without starting a JVM for each one.
+ * <p>
+ * Clients connect over TCP on the loopback interface and send one request per line, getting one line back for each:
+ * <pre>
+ * ADD &lt;session&gt; &lt;item&gt; [quantity]    -&gt; OK &lt;item count&gt; &lt;total in pence&gt;
+ * REMOVE &lt;session&gt; &lt;item&gt; [quantity] -&gt; OK &lt;item count&gt; &lt;total in pence&gt;
+ * TOTAL &lt;session&gt;                    -&gt; OK &lt;item count&gt; &lt;total in pence&gt;
+ * CLOSE &lt;session&gt;                    -&gt; OK &lt;item count&gt; &lt;total in pence&gt;, then forgets the session
+ * </pre>
+ * Anything else, including requests over {@value #MAX_REQUEST_LENGTH} characters, gets {@code ERROR <reason>}. Sessions
+ * are named by the client, each one holds its own {@link Checkout}, and any connection can use any session. A session
+ * starts with its first {@code ADD}, and a {@code TOTAL} of a session which hasn't started is {@code OK 0 0}. Sessions
+ * not used for the idle timeout are evicted.
+ * <p>
+ * Each connection is served by its own thread from the connection executor. By default that is a virtual thread per
+ * connection on a JVM which has them, found reflectively as the build targets Java 8, and a cached pool of platform
+ * threads otherwise. The connection handling only blocks on socket reads and writes, so either works unchanged.
+ */
+public class CheckoutServer implements AutoCloseable {
+
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // Far longer than any valid request, but short enough that a client can't hold much memory per connection
+    static final int MAX_REQUEST_LENGTH = 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor;
+    private final ScheduledExecutorService evictionExecutor;
+    private final long idleTimeoutNanos;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Socket, Boolean> connections = new ConcurrentHashMap<>();
+    private final Thread acceptThread;
+
+    /**
+     * A cart and when it was last used. Once closed or evicted a session is never used again, so a request which
+     * looked it up just before looks up the session again rather than changing a cart nobody can read.
+     */
+    private static class Session {
+        final Checkout checkout = new Checkout();
+        volatile long lastUsedNanos;
+        // Guarded by this
+        boolean closed;
+
+        Session(final long now) {
+            lastUsedNanos = now;
+        }
+    }
+
+    /**
+     * Starts a server on the loopback interface, serving each connection on a virtual thread where the JVM has them,
+     * otherwise on a thread from a cached pool
+     *
+     * @param port              The port to listen on, or 0 for any free port
+     * @param idleTimeoutMillis How long a session can go unused before it is evicted
+     * @throws IOException If the port can't be bound
+     */
+    public CheckoutServer(final int port, final long idleTimeoutMillis) throws IOException {
+        this(port, idleTimeoutMillis, newConnectionExecutor());
+    }
+
+    /**
+     * Starts a server on the loopback interface
+     *
+     * @param port               The port to listen on, or 0 for any free port
+     * @param idleTimeoutMillis  How long a session can go unused before it is evicted
+     * @param connectionExecutor Runs one task per connection for as long as it is open, shut down on close
+     * @throws IOException If the port can't be bound
+     */
+    public CheckoutServer(final int port, final long idleTimeoutMillis, final ExecutorService connectionExecutor) throws IOException {
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("The idle timeout must be positive");
+        }
+        this.connectionExecutor = connectionExecutor;
+        idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+
+        // Sweep often enough that no session outlives the timeout by more than half as long again
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreads("checkout-eviction"));
+        long sweepMillis = Math.max(1, idleTimeoutMillis / 2);
+        evictionExecutor.scheduleWithFixedDelay(() -> evictIdleSessions(System.nanoTime()), sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+
+        acceptThread = new Thread(this::acceptConnections, "checkout-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        long idleTimeoutMillis = args.length > 1 ? TimeUnit.SECONDS.toMillis(Long.parseLong(args[1])) : DEFAULT_IDLE_TIMEOUT_MILLIS;
+        CheckoutServer server = new CheckoutServer(port, idleTimeoutMillis);
+        System.out.println("Checkout listening on " + server.getPort());
+        server.acceptThread.join();
+    }
+
+    /**
+     * @return A virtual thread per task executor on Java 21 or later, otherwise a cached pool of daemon threads
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            return Executors.newCachedThreadPool(daemonThreads("checkout-connection"));
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return The port the server is listening on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The number of sessions currently held
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Forgets every session which hasn't been used for the idle timeout
+     *
+     * @param now The current {@link System#nanoTime()}
+     * @return The number of sessions evicted
+     */
+    int evictIdleSessions(final long now) {
+        int evicted = 0;
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            if (now - session.lastUsedNanos < idleTimeoutNanos) {
+                continue;
+            }
+            // Checked again under the lock, as a request may have used the session since
+            synchronized (session) {
+                if (now - session.lastUsedNanos >= idleTimeoutNanos && sessions.remove(entry.getKey(), session)) {
+                    session.closed = true;
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.put(socket, Boolean.TRUE);
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (final IOException e) {
+                // Thrown when the server socket is closed, which ends the loop
+            }
+        }
+    }
+
+    private void serve(final Socket socket) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            StringBuilder request = new StringBuilder();
+            int length;
+            while ((length = readLine(in, request)) >= 0) {
+                out.write(length > MAX_REQUEST_LENGTH ? "ERROR requests are limited to " + MAX_REQUEST_LENGTH + " characters" : handle(request.toString()));
+                out.write('\n');
+                // Pipelined requests are answered in one write
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (final IOException e) {
+            // The client went away, its sessions live on until they are closed or evicted
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Reads a line without holding more than {@link #MAX_REQUEST_LENGTH} characters of it, so a client can't exhaust
+     * the heap by never ending a line
+     *
+     * @param in   The connection
+     * @param line Cleared, then filled with the line unless it is too long
+     * @return The full length of the line, or -1 at the end of the stream
+     */
+    static int readLine(final BufferedReader in, final StringBuilder line) throws IOException {
+        line.setLength(0);
+        int length = 0;
+        int next;
+        while ((next = in.read()) >= 0 && next != '\n') {
+            if (length++ < MAX_REQUEST_LENGTH && next != '\r') {
+                line.append((char) next);
+            }
+        }
+        return next < 0 && length == 0 ? -1 : length;
+    }
+
+    /**
+     * Handles a single request. The request is checked in full before any session is looked up, and only a valid
+     * {@code ADD} starts a new session, so bad or read only requests can't fill the server with empty sessions.
+     *
+     * @param request A line of the protocol
+     * @return The response line, without a line ending
+     */
+    String handle(final String request) {
+        String[] tokens = request.trim().split("\\s+");
+        if (tokens.length < 2) {
+            return "ERROR expected a command and a session";
+        }
+        String command = tokens[0].toUpperCase(Locale.ROOT);
+        Product product = null;
+        int quantity = 0;
+        switch (command) {
+            case "ADD":
+            case "REMOVE":
+                if (tokens.length < 3 || tokens.length > 4) {
+                    return "ERROR expected " + command + " <session> <item> [quantity]";
+                }
+                product = Checkout.parseItemName(tokens[2]);
+                if (product == null) {
+                    return "ERROR unknown item " + tokens[2];
+                }
+                try {
+                    quantity = tokens.length == 4 ? Integer.parseInt(tokens[3]) : 1;
+                } catch (final NumberFormatException e) {
+                    return "ERROR quantity must be a number: " + tokens[3];
+                }
+                if (quantity < 0) {
+                    return "ERROR quantity must not be negative: " + quantity;
+                }
+                break;
+            case "TOTAL":
+            case "CLOSE":
+                if (tokens.length != 2) {
+                    return "ERROR expected " + command + " <session>";
+                }
+                break;
+            default:
+                return "ERROR unknown command " + tokens[0];
+        }
+
+        while (true) {
+            long now = System.nanoTime();
+            Session session;
+            if ("ADD".equals(command)) {
+                session = sessions.computeIfAbsent(tokens[1], id -> new Session(now));
+            } else if ("CLOSE".equals(command)) {
+                session = sessions.remove(tokens[1]);
+            } else {
+                session = sessions.get(tokens[1]);
+            }
+            if (session == null) {
+                // An unknown session is empty, as every session starts out
+                return "TOTAL".equals(command) ? "OK 0 0" : "ERROR unknown session " + tokens[1];
+            }
+
+            synchronized (session) {
+                if (session.closed) {
+                    // Evicted or closed since it was looked up
+                    continue;
+                }
+                session.lastUsedNanos = now;
+                session.closed = "CLOSE".equals(command);
+                Checkout checkout = session.checkout;
+                try {
+                    if ("ADD".equals(command)) {
+                        checkout.addItemsToCart(product, quantity);
+                    } else if ("REMOVE".equals(command)) {
+                        checkout.removeItemsFromCart(product, quantity);
+                    }
+                } catch (final IllegalArgumentException e) {
+                    return "ERROR " + e.getMessage();
+                }
+                return "OK " + checkout.getCartItems().size() + " " + checkout.getCartTotalCost();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes open ones and forgets every session
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        evictionExecutor.shutdownNow();
+        for (Socket socket : connections.keySet()) {
+            socket.close();
+        }
+        connectionExecutor.shutdownNow();
+        sessions.clear();
+    }
+}
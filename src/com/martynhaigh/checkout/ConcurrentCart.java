@@ -0,0 +1,114 @@
+package com.martynhaigh.checkout;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Quantity based cart which many scanners can add to at once.
+ * <p>
+ * Each {@link Product} has its own striped {@link LongAdder}, so concurrent adds don't contend on a shared counter
+ * and nothing is locked. A scan of a single product is one add, so it is always seen in full or not at all. Scans of
+ * several products are also counted, in striped adders, as they start and finish, and a snapshot is retried until no
+ * such scan started or was in progress while it was read, in the manner of a seqlock. A snapshot therefore never holds
+ * up a writer, and always describes a cart made up of whole scans.
+ */
+public class ConcurrentCart {
+
+    // Indexed by Product.ordinal()
+    private final LongAdder[] productCounts;
+    // Scans of several products started and finished, equal when none is in progress
+    private final LongAdder scansStarted = new LongAdder();
+    private final LongAdder scansFinished = new LongAdder();
+
+    public ConcurrentCart() {
+        productCounts = new LongAdder[Product.values().length];
+        for (int i = 0; i < productCounts.length; i++) {
+            productCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds a number of units of a product to the cart. Safe to call from any thread.
+     *
+     * @param product  The product to add, null values are ignored
+     * @param quantity The number of units to add
+     */
+    public void add(final Product product, final int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        if (product == null) {
+            return;
+        }
+        productCounts[product.ordinal()].add(quantity);
+    }
+
+    /**
+     * Adds several products as one scan, such as a multipack, so no snapshot sees part of it. Safe to call from any
+     * thread.
+     *
+     * @param quantities The number of units of each {@link Product} to add, indexed by {@link Product#ordinal()}
+     */
+    public void add(final int[] quantities) {
+        if (quantities.length != productCounts.length) {
+            throw new IllegalArgumentException("Expected quantities for " + productCounts.length + " products but got " + quantities.length);
+        }
+        for (int quantity : quantities) {
+            if (quantity < 0) {
+                throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+            }
+        }
+        scansStarted.increment();
+        try {
+            for (int product = 0; product < quantities.length; product++) {
+                if (quantities[product] > 0) {
+                    productCounts[product].add(quantities[product]);
+                }
+            }
+        } finally {
+            scansFinished.increment();
+        }
+    }
+
+    /**
+     * Get the number of units of a product in the cart
+     *
+     * @param product The product to look up
+     * @return The number of units
+     */
+    public int getQuantity(final Product product) {
+        return Math.toIntExact(productCounts[product.ordinal()].sum());
+    }
+
+    /**
+     * Takes a consistent snapshot of the quantity of every product in the cart without holding up adds, trying again
+     * while scans of several products are in progress
+     *
+     * @return The product counts, indexed by {@link Product#ordinal()}
+     */
+    public int[] getProductCounts() {
+        long[] sums = new long[productCounts.length];
+        long finished;
+        do {
+            // Read in the opposite order to the writes, so a scan overlapping the read leaves started ahead of finished
+            finished = scansFinished.sum();
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = productCounts[i].sum();
+            }
+        } while (scansStarted.sum() != finished);
+        int[] snapshot = new int[sums.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = Math.toIntExact(sums[i]);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the total price of a snapshot of the cart, with offers applied
+     *
+     * @return total price in pennies
+     */
+    public long getTotalCost() {
+        int[] snapshot = getProductCounts();
+        return Product.getPriceInPence(snapshot) - Offer.applyAllOffers(snapshot).getTotalSavings();
+    }
+}
@@ -0,0 +1,88 @@
+package com.martynhaigh.checkout;
+
+/**
+ * Running totals across many baskets, such as a day's trading. Every sum is checked, so a total which no longer fits
+ * in a long throws an {@link ArithmeticException} rather than silently wrapping.
+ */
+public class DailyTotals {
+
+    private long basketCount;
+    private long totalPence;
+
+    // Indexed by Offer.ordinal()
+    private final long[] offerSavings = new long[Offer.values().length];
+
+    public DailyTotals() {
+    }
+
+    /**
+     * Recreates totals from their parts, e.g. when they are received from another process
+     *
+     * @param basketCount  The number of baskets
+     * @param totalPence   The total of every basket, in pence
+     * @param offerSavings The savings from each offer, indexed by {@link Offer#ordinal()}
+     */
+    DailyTotals(final long basketCount, final long totalPence, final long[] offerSavings) {
+        if (offerSavings.length != this.offerSavings.length) {
+            throw new IllegalArgumentException("Expected savings for " + this.offerSavings.length + " offers but got " + offerSavings.length);
+        }
+        this.basketCount = basketCount;
+        this.totalPence = totalPence;
+        System.arraycopy(offerSavings, 0, this.offerSavings, 0, offerSavings.length);
+    }
+
+    /**
+     * Adds a priced basket to the totals
+     *
+     * @param basketTotal The basket total in pence, with offers applied
+     */
+    public void addBasket(final long basketTotal) {
+        totalPence = Math.addExact(totalPence, basketTotal);
+        basketCount++;
+    }
+
+    /**
+     * Adds the savings from an offer to the totals
+     *
+     * @param offer   The offer applied
+     * @param savings The savings in pence
+     */
+    public void addOfferSavings(final Offer offer, final long savings) {
+        offerSavings[offer.ordinal()] = Math.addExact(offerSavings[offer.ordinal()], savings);
+    }
+
+    /**
+     * Adds another set of totals to these, e.g. when combining the results of parallel pricing
+     *
+     * @param other The totals to add
+     */
+    public void merge(final DailyTotals other) {
+        totalPence = Math.addExact(totalPence, other.totalPence);
+        basketCount = Math.addExact(basketCount, other.basketCount);
+        for (int offer = 0; offer < offerSavings.length; offer++) {
+            offerSavings[offer] = Math.addExact(offerSavings[offer], other.offerSavings[offer]);
+        }
+    }
+
+    /**
+     * @return The number of baskets added
+     */
+    public long getBasketCount() {
+        return basketCount;
+    }
+
+    /**
+     * @return The total of every basket added, in pence
+     */
+    public long getTotalPence() {
+        return totalPence;
+    }
+
+    /**
+     * @param offer The offer to look up
+     * @return The savings from the offer across every basket added, in pence
+     */
+    public long getOfferSavings(final Offer offer) {
+        return offerSavings[offer.ordinal()];
+    }
+}
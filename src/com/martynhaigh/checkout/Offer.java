@@ -1,60 +1,290 @@
 package com.martynhaigh.checkout;
 
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public enum Offer {
     //buy one, get one free on Apples
     BOGOF_APPLE {
         @Override
-        OfferDetails applyOffer(List<Product> shoppingCart) {
-            int count = (int) shoppingCart.stream().filter(product -> product == Product.APPLE).count();
+        int timesApplied(int[] productCounts) {
+            return productCounts[Product.APPLE.ordinal()] / 2;
+        }
 
-            return new OfferDetails(count / 2, Product.APPLE.getPriceInPence());
+        @Override
+        long getSavingEachTime() {
+            return Product.APPLE.getPriceInPence();
         }
     },
     //3 for the price of 2 on Oranges
     THREE_FOR_TWO_ORANGES {
         @Override
-        OfferDetails applyOffer(List<Product> shoppingCart) {
-            int count = (int) shoppingCart.stream().filter(product -> product == Product.ORANGE).count();
+        int timesApplied(int[] productCounts) {
+            return productCounts[Product.ORANGE.ordinal()] / 3;
+        }
 
-            return new OfferDetails(count / 3, Product.ORANGE.getPriceInPence());
+        @Override
+        long getSavingEachTime() {
+            return Product.ORANGE.getPriceInPence();
         }
     };
 
+    private static final Offer[] OFFERS = values();
+
     /**
      * Iterates over all available offers and generates an {@link AppliedOffers} object with details
      * @param shoppingCart The cart to process for offers
      * @return Details of offers available
      */
     public static AppliedOffers applyAllOffers(List<Product> shoppingCart) {
-        List<OfferDetails> offerDetails = Arrays.stream(Offer.values()).map(offer -> offer.applyOffer(shoppingCart)).collect(Collectors.toList());
-        return new AppliedOffers(offerDetails);
+        return applyAllOffers(Product.countProducts(shoppingCart));
+    }
+
+    /**
+     * Iterates over all available offers and generates an {@link AppliedOffers} object with details
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @return Details of the offers which applied
+     */
+    public static AppliedOffers applyAllOffers(int[] productCounts) {
+        long start = PricingMetrics.start();
+        AppliedOffers appliedOffers = new AppliedOffers();
+        for (Offer offer : OFFERS) {
+            long offerStart = PricingMetrics.start();
+            int timesApplied = offer.timesApplied(productCounts);
+            long savingEachTime = offer.getSavingEachTime();
+            PricingMetrics.recordOffer(offer, offerStart, timesApplied);
+            appliedOffers.add(offer, timesApplied, savingEachTime);
+        }
+        PricingMetrics.recordStage(PricingMetrics.Stage.APPLY_OFFERS, start);
+        return appliedOffers;
+    }
+
+    /**
+     * Applies this offer to a cart, counting its contents first. Prefer {@link #applyOffer(int[])} when the
+     * counts are already available.
+     * @param shoppingCart The cart to process for this offer
+     * @return Details of this offer
+     */
+    OfferDetails applyOffer(List<Product> shoppingCart) {
+        return applyOffer(Product.countProducts(shoppingCart));
+    }
+
+    /**
+     * Applies this offer to a cart
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @return Details of this offer
+     */
+    OfferDetails applyOffer(int[] productCounts) {
+        return new OfferDetails(name(), timesApplied(productCounts), getSavingEachTime());
     }
 
-    abstract OfferDetails applyOffer(List<Product> shoppingCart);
+    /**
+     * Works out the saving from this offer on a cart without keeping any details
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @return The saving, in pence
+     */
+    long getSaving(int[] productCounts) {
+        long start = PricingMetrics.start();
+        int timesApplied = timesApplied(productCounts);
+        long saving = timesApplied * getSavingEachTime();
+        PricingMetrics.recordOffer(this, start, timesApplied);
+        return saving;
+    }
 
     /**
-     * Immutable class describing offers
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @return The number of times this offer applies to the cart
+     */
+    abstract int timesApplied(int[] productCounts);
+
+    /**
+     * @return The saving each time this offer applies, in pence
+     */
+    abstract long getSavingEachTime();
+
+    /**
+     * Calculates the change in savings when a unit of a product is added to a cart
+     * @param productCounts The product counts before the unit is added
+     * @param product The product being added
+     * @return The change in savings, in pence
+     */
+    long onAdd(int[] productCounts, Product product) {
+        return savingsDelta(productCounts, product, 1);
+    }
+
+    /**
+     * Calculates the change in savings when a unit of a product is removed from a cart
+     * @param productCounts The product counts before the unit is removed
+     * @param product The product being removed
+     * @return The change in savings, in pence
+     */
+    long onRemove(int[] productCounts, Product product) {
+        return savingsDelta(productCounts, product, -1);
+    }
+
+    /**
+     * Calculates the change in savings when the quantity of a product in a cart changes
+     * @param productCounts The product counts before the change, left unmodified on return
+     * @param product The product being added or removed
+     * @param quantity The number of units added, or removed if negative
+     * @return The change in savings, in pence
+     */
+    long savingsDelta(int[] productCounts, Product product, int quantity) {
+        return timesAppliedDelta(productCounts, product, quantity) * getSavingEachTime();
+    }
+
+    /**
+     * Calculates the change in the number of times this offer applies when the quantity of a product in a cart
+     * changes. Nothing is timed, as this runs on every add and remove.
+     * @param productCounts The product counts before the change, left unmodified on return
+     * @param product The product being added or removed
+     * @param quantity The number of units added, or removed if negative
+     * @return The change in the number of times this offer applies
+     */
+    int timesAppliedDelta(int[] productCounts, Product product, int quantity) {
+        int timesAppliedBefore = timesApplied(productCounts);
+        productCounts[product.ordinal()] += quantity;
+        try {
+            return timesApplied(productCounts) - timesAppliedBefore;
+        } finally {
+            productCounts[product.ordinal()] -= quantity;
+        }
+    }
+
+    /**
+     * Class describing the offers which applied to a cart, filled in while they are evaluated and not changed after.
+     * Only offers which applied at least once are kept, in parallel arrays, and the total savings are added up as each
+     * one is added. {@link OfferDetails} are only created for callers who ask for them through {@link #getOffers()}.
      */
     static public class AppliedOffers {
-        final List<OfferDetails> offers;
-        final int totalSavings;
+        private static final String[] NO_NAMES = new String[0];
+        private static final Offer[] NO_OFFERS = new Offer[0];
+        private static final int[] NO_TIMES_APPLIED = new int[0];
+        private static final long[] NO_SAVINGS = new long[0];
+        private static final int INITIAL_CAPACITY = 4;
+
+        // Offer i of size is at index i of each array, which are shared empty arrays until an offer applies
+        private String[] names = NO_NAMES;
+        // The built in offer each applied offer is, or null for data driven rules
+        private Offer[] offers = NO_OFFERS;
+        private int[] timesApplied = NO_TIMES_APPLIED;
+        private long[] moneySavedForEachOffer = NO_SAVINGS;
+        private int size;
+        private long totalSavings;
+
+        AppliedOffers() {
+        }
+
+        /**
+         * Records an offer as it is evaluated
+         * @param name The name of the offer
+         * @param timesApplied The number of times it applied, nothing is recorded if this is zero
+         * @param moneySavedForEachOffer The saving each time it applied, in pence
+         */
+        void add(String name, int timesApplied, long moneySavedForEachOffer) {
+            add(name, null, timesApplied, moneySavedForEachOffer);
+        }
 
-        AppliedOffers(List<OfferDetails> offers) {
-            this.offers = offers;
-            totalSavings = calculateSavings();
+        /**
+         * Records a built in offer as it is evaluated
+         * @param offer The offer
+         * @param timesApplied The number of times it applied, nothing is recorded if this is zero
+         * @param moneySavedForEachOffer The saving each time it applied, in pence
+         */
+        void add(Offer offer, int timesApplied, long moneySavedForEachOffer) {
+            add(offer.name(), offer, timesApplied, moneySavedForEachOffer);
         }
 
-        private int calculateSavings() {
-            return offers.stream().mapToInt(OfferDetails::getTotalSaving).sum();
+        private void add(String name, Offer offer, int timesApplied, long moneySavedForEachOffer) {
+            if (timesApplied == 0) {
+                return;
+            }
+            if (size == names.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+                names = Arrays.copyOf(names, capacity);
+                offers = Arrays.copyOf(offers, capacity);
+                this.timesApplied = Arrays.copyOf(this.timesApplied, capacity);
+                this.moneySavedForEachOffer = Arrays.copyOf(this.moneySavedForEachOffer, capacity);
+            }
+            names[size] = name;
+            offers[size] = offer;
+            this.timesApplied[size] = timesApplied;
+            this.moneySavedForEachOffer[size] = moneySavedForEachOffer;
+            size++;
+            totalSavings += timesApplied * moneySavedForEachOffer;
         }
 
-        public int getTotalSavings() {
+        /**
+         * @return The number of offers which applied
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param offer The index of an applied offer, less than {@link #size()}
+         * @return The name of the offer
+         */
+        public String getName(int offer) {
+            checkIndex(offer);
+            return names[offer];
+        }
+
+        /**
+         * @param offer The index of an applied offer, less than {@link #size()}
+         * @return The built in offer, or null if it was applied from a data driven rule, whatever its name
+         */
+        public Offer getOffer(int offer) {
+            checkIndex(offer);
+            return offers[offer];
+        }
+
+        /**
+         * @param offer The index of an applied offer, less than {@link #size()}
+         * @return The number of times the offer applied
+         */
+        public int getTimesApplied(int offer) {
+            checkIndex(offer);
+            return timesApplied[offer];
+        }
+
+        /**
+         * @param offer The index of an applied offer, less than {@link #size()}
+         * @return The saving from the offer, in pence
+         */
+        public long getTotalSaving(int offer) {
+            checkIndex(offer);
+            return timesApplied[offer] * moneySavedForEachOffer[offer];
+        }
+
+        private void checkIndex(int offer) {
+            if (offer < 0 || offer >= size) {
+                throw new IndexOutOfBoundsException("Offer " + offer + " of " + size);
+            }
+        }
+
+        public long getTotalSavings() {
             return totalSavings;
         }
+
+        /**
+         * @return A read only view of the offers which applied, creating the details of each one as it is read
+         */
+        public List<OfferDetails> getOffers() {
+            return new AbstractList<OfferDetails>() {
+                @Override
+                public OfferDetails get(int offer) {
+                    checkIndex(offer);
+                    return new OfferDetails(names[offer], timesApplied[offer], moneySavedForEachOffer[offer]);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
     }
 
     /**
@@ -62,15 +292,21 @@ public enum Offer {
      */
     static public class OfferDetails {
 
+        final String name;
         final int timesApplied;
-        final int moneySavedForEachOffer;
+        final long moneySavedForEachOffer;
 
-        OfferDetails(int timesApplied, int moneySavedForEachOffer) {
+        OfferDetails(String name, int timesApplied, long moneySavedForEachOffer) {
+            this.name = name;
             this.timesApplied = timesApplied;
             this.moneySavedForEachOffer = moneySavedForEachOffer;
         }
 
-        public int getTotalSaving() {
+        public String getName() {
+            return name;
+        }
+
+        public long getTotalSaving() {
             return timesApplied * moneySavedForEachOffer;
         }
     }
@@ -0,0 +1,340 @@
+package com.martynhaigh.checkout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the best for customer allocation of units to competing promotions.
+ * <p>
+ * {@link OfferRules#apply(int[])} evaluates each rule against the whole cart, which double counts units when rules
+ * overlap, e.g. a bundle of an apple and an orange alongside buy one get one free on apples. This allocator instead
+ * chooses how many times to apply each rule so that no unit is used twice and the total saving is as large as
+ * possible.
+ * <p>
+ * When the cart has few enough distinct quantity combinations the allocation is solved exactly by dynamic programming
+ * over every quantity vector up to the cart's, in a dense table. Otherwise it is a depth first branch and bound over
+ * the rules, choosing how many times to apply each one in turn. The search starts from a greedy allocation, prunes
+ * branches which can't beat the best allocation so far using a per unit saving bound, and memoises the best saving
+ * seen on reaching each combination of rule and remaining quantities so that dominated paths are dropped. If the time
+ * budget runs out the best allocation found so far is returned, which is never worse than the greedy one.
+ */
+public class OfferAllocator {
+
+    // How many search nodes or table entries to visit between checks of the clock
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    // The largest number of quantity vectors to solve with a dense table by default
+    private static final int DENSE_TABLE_LIMIT = 1 << 20;
+
+    private final String[] ruleNames;
+    private final int[][] ruleQuantities;
+    private final long[] ruleSavings;
+    private final long timeBudgetNanos;
+    private final int denseTableLimit;
+
+    /**
+     * @param offerRules      The promotions to allocate units to
+     * @param timeBudgetNanos The longest to search for an optimal allocation before settling for the best found so far
+     */
+    public OfferAllocator(final OfferRules offerRules, final long timeBudgetNanos) {
+        this(offerRules, timeBudgetNanos, DENSE_TABLE_LIMIT);
+    }
+
+    /**
+     * @param offerRules      The promotions to allocate units to
+     * @param timeBudgetNanos The longest to search for an optimal allocation before settling for the best found so far
+     * @param denseTableLimit The largest number of quantity vectors to solve with a dense table rather than a search
+     */
+    OfferAllocator(final OfferRules offerRules, final long timeBudgetNanos, final int denseTableLimit) {
+        // Rules needing exactly the same units compete for them, so only the one saving the most is ever worth applying
+        Map<List<Integer>, Integer> bestRuleByQuantities = new HashMap<>();
+        for (int rule = 0; rule < offerRules.size(); rule++) {
+            List<Integer> quantities = Arrays.stream(offerRules.getRuleQuantities(rule)).boxed().collect(Collectors.toList());
+            bestRuleByQuantities.merge(quantities, rule, (a, b) -> offerRules.getRuleSaving(a) >= offerRules.getRuleSaving(b) ? a : b);
+        }
+
+        ruleNames = new String[bestRuleByQuantities.size()];
+        ruleQuantities = new int[bestRuleByQuantities.size()][];
+        ruleSavings = new long[bestRuleByQuantities.size()];
+        int rule = 0;
+        for (int bestRule : bestRuleByQuantities.values()) {
+            ruleNames[rule] = offerRules.getRuleName(bestRule);
+            ruleQuantities[rule] = offerRules.getRuleQuantities(bestRule);
+            ruleSavings[rule++] = offerRules.getRuleSaving(bestRule);
+        }
+        this.timeBudgetNanos = timeBudgetNanos;
+        this.denseTableLimit = denseTableLimit;
+    }
+
+    /**
+     * Allocates the units in a cart to promotions
+     *
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @return Details of the promotions applied, where no unit counts towards more than one promotion
+     */
+    public Offer.AppliedOffers allocate(final int[] productCounts) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        long tableSize = 1;
+        for (int count : productCounts) {
+            tableSize = Math.min(tableSize * (count + 1L), denseTableLimit + 1L);
+        }
+        if (tableSize <= denseTableLimit) {
+            Offer.AppliedOffers appliedOffers = allocateWithTable(productCounts, (int) tableSize, deadline);
+            if (appliedOffers != null) {
+                return appliedOffers;
+            }
+        }
+
+        Search search = new Search(productCounts, deadline);
+        search.run();
+
+        Offer.AppliedOffers appliedOffers = new Offer.AppliedOffers();
+        for (int i = 0; i < search.rules.length; i++) {
+            appliedOffers.add(ruleNames[search.rules[i]], search.bestTimesApplied[i], ruleSavings[search.rules[i]]);
+        }
+        return appliedOffers;
+    }
+
+    /**
+     * Solves the allocation exactly as an unbounded knapsack over quantity vectors, filling a table of the best saving
+     * for every vector up to the cart's. Rules are added one at a time, each visiting only the vectors large enough to
+     * apply it, in increasing mixed radix order so the smaller vector it builds on has already been solved.
+     *
+     * @return The optimal allocation, or null if the deadline passed first
+     */
+    private Offer.AppliedOffers allocateWithTable(final int[] productCounts, final int tableSize, final long deadline) {
+        int[] rules = applicableRules(productCounts);
+        int[] radices = new int[productCounts.length];
+        for (int product = 0, radix = 1; product < productCounts.length; radix *= productCounts[product] + 1, product++) {
+            radices[product] = radix;
+        }
+        int[] ruleOffsets = new int[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            for (int product = 0; product < productCounts.length; product++) {
+                ruleOffsets[i] += ruleQuantities[rules[i]][product] * radices[product];
+            }
+        }
+
+        long[] bestSavings = new long[tableSize];
+        int[] quantities = new int[productCounts.length];
+        int visited = 0;
+        for (int i = 0; i < rules.length; i++) {
+            int[] needed = ruleQuantities[rules[i]];
+            long saving = ruleSavings[rules[i]];
+            int offset = ruleOffsets[i];
+            System.arraycopy(needed, 0, quantities, 0, quantities.length);
+
+            int state = offset;
+            while (true) {
+                if (visited++ % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+                    return null;
+                }
+                bestSavings[state] = Math.max(bestSavings[state], bestSavings[state - offset] + saving);
+
+                // Step the quantities on to the next vector which can take the rule, like an odometer
+                int product = 0;
+                while (product < quantities.length && quantities[product] == productCounts[product]) {
+                    state -= (productCounts[product] - needed[product]) * radices[product];
+                    quantities[product] = needed[product];
+                    product++;
+                }
+                if (product == quantities.length) {
+                    break;
+                }
+                quantities[product]++;
+                state += radices[product];
+            }
+        }
+
+        // Walk back from the full cart, taking any rule which accounts for the best saving at each step
+        int[] timesApplied = new int[rules.length];
+        int state = tableSize - 1;
+        int[] remaining = productCounts.clone();
+        while (bestSavings[state] > 0) {
+            for (int i = 0; ; i++) {
+                if (fits(rules[i], remaining) && bestSavings[state - ruleOffsets[i]] + ruleSavings[rules[i]] == bestSavings[state]) {
+                    apply(rules[i], remaining, 1);
+                    state -= ruleOffsets[i];
+                    timesApplied[i]++;
+                    break;
+                }
+            }
+        }
+
+        Offer.AppliedOffers appliedOffers = new Offer.AppliedOffers();
+        for (int i = 0; i < rules.length; i++) {
+            appliedOffers.add(ruleNames[rules[i]], timesApplied[i], ruleSavings[rules[i]]);
+        }
+        return appliedOffers;
+    }
+
+    /**
+     * The state of a single branch and bound search, not shared between threads
+     */
+    private class Search {
+        // The rules which could apply to the cart, best saving per unit first
+        final int[] rules;
+        final int[] remaining;
+
+        // bounds[i][p] is the best saving per unit of product p from rules i onwards
+        final double[][] bounds;
+
+        final int[] timesApplied;
+        final int[] bestTimesApplied;
+        long bestSaving;
+
+        // The best saving so far on reaching a rule index with a given remaining quantity, when it can be encoded
+        final Map<Long, Long> bestSavingAtState = new HashMap<>();
+        final long[] radices;
+        final boolean memoise;
+
+        final long deadline;
+        int nodesVisited;
+        boolean outOfTime;
+
+        Search(final int[] productCounts, final long deadline) {
+            remaining = productCounts.clone();
+            rules = applicableRules(productCounts);
+            timesApplied = new int[rules.length];
+            bestTimesApplied = new int[rules.length];
+
+            bounds = new double[rules.length + 1][productCounts.length];
+            for (int i = rules.length - 1; i >= 0; i--) {
+                double ratio = savingPerUnit(rules[i]);
+                for (int product = 0; product < productCounts.length; product++) {
+                    bounds[i][product] = ruleQuantities[rules[i]][product] > 0 ? Math.max(bounds[i + 1][product], ratio) : bounds[i + 1][product];
+                }
+            }
+
+            // Encode the state as a mixed radix number, as long as it fits in a long
+            radices = new long[productCounts.length + 1];
+            long radix = 1;
+            boolean fits = true;
+            for (int product = 0; product <= productCounts.length && fits; product++) {
+                radices[product] = radix;
+                long base = product < productCounts.length ? productCounts[product] + 1L : rules.length + 1L;
+                fits = radix <= Long.MAX_VALUE / base;
+                radix *= base;
+            }
+            memoise = fits;
+
+            this.deadline = deadline;
+        }
+
+        void run() {
+            greedy();
+            search(0, 0);
+        }
+
+        /**
+         * Applies each rule as many times as possible, best saving per unit first
+         */
+        private void greedy() {
+            int[] counts = remaining.clone();
+            for (int i = 0; i < rules.length; i++) {
+                int times = maxTimesApplied(rules[i], counts);
+                apply(rules[i], counts, times);
+                bestTimesApplied[i] = times;
+                bestSaving += times * ruleSavings[rules[i]];
+            }
+        }
+
+        private void search(final int index, final long saving) {
+            if (outOfTime || (nodesVisited++ % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline)) {
+                outOfTime = true;
+                return;
+            }
+
+            if (saving > bestSaving) {
+                bestSaving = saving;
+                System.arraycopy(timesApplied, 0, bestTimesApplied, 0, timesApplied.length);
+                Arrays.fill(bestTimesApplied, index, bestTimesApplied.length, 0);
+            }
+            if (index == rules.length || saving + upperBound(index) <= bestSaving) {
+                return;
+            }
+            if (memoise) {
+                Long state = encode(index);
+                Long previous = bestSavingAtState.get(state);
+                if (previous != null && previous >= saving) {
+                    return;
+                }
+                bestSavingAtState.put(state, saving);
+            }
+
+            int rule = rules[index];
+            for (int times = maxTimesApplied(rule, remaining); times >= 0; times--) {
+                apply(rule, remaining, times);
+                timesApplied[index] = times;
+                search(index + 1, saving + times * ruleSavings[rule]);
+                apply(rule, remaining, -times);
+            }
+            timesApplied[index] = 0;
+        }
+
+        private double upperBound(final int index) {
+            double bound = 0;
+            for (int product = 0; product < remaining.length; product++) {
+                bound += remaining[product] * bounds[index][product];
+            }
+            // Savings are whole pence, so anything below the next penny can't be reached
+            return Math.floor(bound + 1e-9);
+        }
+
+        private long encode(final int index) {
+            long state = index * radices[remaining.length];
+            for (int product = 0; product < remaining.length; product++) {
+                state += remaining[product] * radices[product];
+            }
+            return state;
+        }
+    }
+
+    private int[] applicableRules(final int[] productCounts) {
+        List<Integer> applicable = new ArrayList<>();
+        for (int rule = 0; rule < ruleSavings.length; rule++) {
+            if (maxTimesApplied(rule, productCounts) > 0) {
+                applicable.add(rule);
+            }
+        }
+        applicable.sort((a, b) -> Double.compare(savingPerUnit(b), savingPerUnit(a)));
+        return applicable.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private double savingPerUnit(final int rule) {
+        int units = 0;
+        for (int quantity : ruleQuantities[rule]) {
+            units += quantity;
+        }
+        return (double) ruleSavings[rule] / units;
+    }
+
+    private boolean fits(final int rule, final int[] productCounts) {
+        for (int product = 0; product < productCounts.length; product++) {
+            if (productCounts[product] < ruleQuantities[rule][product]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int maxTimesApplied(final int rule, final int[] productCounts) {
+        int times = Integer.MAX_VALUE;
+        for (int product = 0; product < productCounts.length; product++) {
+            if (ruleQuantities[rule][product] > 0) {
+                times = Math.min(times, productCounts[product] / ruleQuantities[rule][product]);
+            }
+        }
+        return times;
+    }
+
+    private void apply(final int rule, final int[] productCounts, final int times) {
+        for (int product = 0; product < productCounts.length; product++) {
+            productCounts[product] -= times * ruleQuantities[rule][product];
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.martynhaigh.checkout;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * When each {@link Offer} is live, for pricing baskets as they were at the time of the transaction.
+ * <p>
+ * Each offer has any number of validity intervals, which include their start and exclude their end. At build time
+ * every interval start and end is collected into one sorted array of change points, and the set of live offers is
+ * worked out once for each window between consecutive change points. Finding the offers live at a timestamp is then
+ * a binary search. A {@link Cursor} goes further for replays sorted by time, remembering the last window so that
+ * consecutive baskets in the same window don't search at all.
+ * <p>
+ * A calendar can be loaded from a properties file where each key is an offer and each value a comma separated list of
+ * ISO-8601 intervals, with an empty start or end for an interval which is open on that side:
+ * <pre>
+ * BOGOF_APPLE = 2024-01-01T00:00:00Z/2024-02-01T00:00:00Z, 2024-06-01T00:00:00Z/
+ * THREE_FOR_TWO_ORANGES = /2024-03-01T00:00:00Z
+ * </pre>
+ */
+public class OfferCalendar {
+
+    private static final Offer[] NO_OFFERS = new Offer[0];
+
+    // Window w runs from changePoints[w - 1] until changePoints[w], the first and last windows are open ended
+    private final long[] changePoints;
+    private final Offer[][] windowOffers;
+
+    private OfferCalendar(final long[] changePoints, final Offer[][] windowOffers) {
+        this.changePoints = changePoints;
+        this.windowOffers = windowOffers;
+    }
+
+    /**
+     * Loads a calendar in properties format
+     *
+     * @param reader The calendar definition
+     * @return The calendar
+     * @throws IOException If the definition can't be read
+     */
+    public static OfferCalendar load(final Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+
+        Builder builder = new Builder();
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            Offer offer;
+            try {
+                offer = Offer.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown offer " + name, e);
+            }
+            for (String interval : properties.getProperty(name).split(",")) {
+                String[] bounds = interval.trim().split("/", -1);
+                if (bounds.length != 2) {
+                    throw new IllegalArgumentException("Invalid interval for " + name + ": " + interval);
+                }
+                builder.add(offer, parseBound(bounds[0], Long.MIN_VALUE), parseBound(bounds[1], Long.MAX_VALUE));
+            }
+        }
+        return builder.build();
+    }
+
+    private static long parseBound(final String bound, final long unbounded) {
+        return bound.trim().isEmpty() ? unbounded : Instant.parse(bound.trim()).toEpochMilli();
+    }
+
+    /**
+     * @param timestamp The time of a transaction, in milliseconds since the epoch
+     * @return The offers live at that time, in {@link Offer} order. The array is shared and must not be modified.
+     */
+    public Offer[] getActiveOffers(final long timestamp) {
+        return windowOffers[findWindow(timestamp)];
+    }
+
+    /**
+     * @return The index of the window holding the timestamp, i.e. the number of change points at or before it
+     */
+    private int findWindow(final long timestamp) {
+        int low = 0;
+        int high = changePoints.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (changePoints[middle] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The number of distinct times at which the set of live offers can change
+     */
+    public int getChangePointCount() {
+        return changePoints.length;
+    }
+
+    /**
+     * @return A new cursor for resolving a run of timestamps, ideally in order
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Resolves the live offers for a run of timestamps, remembering the window of the last one so that a replay sorted
+     * by time only searches when it crosses into a new window. Not thread safe, use a cursor per thread.
+     */
+    public class Cursor {
+
+        // The window last resolved, covering windowStart inclusive to windowEnd exclusive
+        private long windowStart = Long.MAX_VALUE;
+        private long windowEnd = Long.MIN_VALUE;
+        private Offer[] offers = NO_OFFERS;
+
+        private Cursor() {
+        }
+
+        /**
+         * @param timestamp The time of a transaction, in milliseconds since the epoch
+         * @return The offers live at that time, in {@link Offer} order. The array is shared and must not be modified.
+         */
+        public Offer[] getActiveOffers(final long timestamp) {
+            if (timestamp < windowStart || timestamp >= windowEnd) {
+                int window = findWindow(timestamp);
+                windowStart = window == 0 ? Long.MIN_VALUE : changePoints[window - 1];
+                windowEnd = window == changePoints.length ? Long.MAX_VALUE : changePoints[window];
+                offers = windowOffers[window];
+            }
+            return offers;
+        }
+
+        /**
+         * Applies the offers live at a time to a basket
+         *
+         * @param productCounts The quantity of each {@link Product} in the basket, indexed by {@link Product#ordinal()}
+         * @param timestamp     The time of the transaction, in milliseconds since the epoch
+         * @return Details of the live offers
+         */
+        public Offer.AppliedOffers applyOffers(final int[] productCounts, final long timestamp) {
+            Offer.AppliedOffers appliedOffers = new Offer.AppliedOffers();
+            for (Offer offer : getActiveOffers(timestamp)) {
+                appliedOffers.add(offer, offer.timesApplied(productCounts), offer.getSavingEachTime());
+            }
+            return appliedOffers;
+        }
+
+        /**
+         * Prices a basket with the offers live at a time, without keeping any details of the offers
+         *
+         * @param productCounts The quantity of each {@link Product} in the basket, indexed by {@link Product#ordinal()}
+         * @param timestamp     The time of the transaction, in milliseconds since the epoch
+         * @return The basket total in pence
+         */
+        public long getTotalCost(final int[] productCounts, final long timestamp) {
+            long savings = 0;
+            for (Offer offer : getActiveOffers(timestamp)) {
+                savings += offer.getSaving(productCounts);
+            }
+            return Product.getPriceInPence(productCounts) - savings;
+        }
+    }
+
+    /**
+     * Collects validity intervals and indexes them into a calendar
+     */
+    public static class Builder {
+
+        private final List<Offer> offers = new ArrayList<>();
+        private final List<long[]> intervals = new ArrayList<>();
+
+        /**
+         * Makes an offer live for an interval. Intervals for the same offer may overlap.
+         *
+         * @param offer The offer
+         * @param from  The start of the interval in milliseconds since the epoch, inclusive, or Long.MIN_VALUE
+         * @param until The end of the interval in milliseconds since the epoch, exclusive, or Long.MAX_VALUE
+         * @return This builder
+         */
+        public Builder add(final Offer offer, final long from, final long until) {
+            if (offer == null) {
+                throw new IllegalArgumentException("An interval needs an offer");
+            }
+            if (until <= from) {
+                throw new IllegalArgumentException("Interval for " + offer + " ends before it starts: " + from + " to " + until);
+            }
+            offers.add(offer);
+            intervals.add(new long[]{from, until});
+            return this;
+        }
+
+        /**
+         * @return A calendar of the intervals added so far
+         */
+        public OfferCalendar build() {
+            // Unbounded ends never change anything, the open first and last windows already cover them
+            long[] points = new long[intervals.size() * 2];
+            int pointCount = 0;
+            for (long[] interval : intervals) {
+                if (interval[0] != Long.MIN_VALUE) {
+                    points[pointCount++] = interval[0];
+                }
+                if (interval[1] != Long.MAX_VALUE) {
+                    points[pointCount++] = interval[1];
+                }
+            }
+            Arrays.sort(points, 0, pointCount);
+            int distinct = 0;
+            for (int i = 0; i < pointCount; i++) {
+                if (distinct == 0 || points[i] != points[distinct - 1]) {
+                    points[distinct++] = points[i];
+                }
+            }
+            long[] changePoints = Arrays.copyOf(points, distinct);
+
+            // Count the intervals covering each window with a difference array, then read off the live offers
+            int windowCount = changePoints.length + 1;
+            int[][] coverageChanges = new int[Offer.values().length][windowCount + 1];
+            for (int i = 0; i < intervals.size(); i++) {
+                long[] interval = intervals.get(i);
+                int first = interval[0] == Long.MIN_VALUE ? 0 : Arrays.binarySearch(changePoints, interval[0]) + 1;
+                int end = interval[1] == Long.MAX_VALUE ? windowCount : Arrays.binarySearch(changePoints, interval[1]) + 1;
+                coverageChanges[offers.get(i).ordinal()][first]++;
+                coverageChanges[offers.get(i).ordinal()][end]--;
+            }
+
+            // Windows with the same live offers share one array
+            Map<EnumSet<Offer>, Offer[]> distinctSets = new HashMap<>();
+            Offer[][] windowOffers = new Offer[windowCount][];
+            int[] coverage = new int[Offer.values().length];
+            for (int window = 0; window < windowCount; window++) {
+                EnumSet<Offer> live = EnumSet.noneOf(Offer.class);
+                for (Offer offer : Offer.values()) {
+                    coverage[offer.ordinal()] += coverageChanges[offer.ordinal()][window];
+                    if (coverage[offer.ordinal()] > 0) {
+                        live.add(offer);
+                    }
+                }
+                windowOffers[window] = distinctSets.computeIfAbsent(live, set -> set.toArray(NO_OFFERS));
+            }
+            return new OfferCalendar(changePoints, windowOffers);
+        }
+    }
+}
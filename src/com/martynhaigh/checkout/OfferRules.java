@@ -0,0 +1,330 @@
+package com.martynhaigh.checkout;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Promotions defined as data rather than {@link Offer} constants, loaded from a properties file where each key is the
+ * rule name and each value describes the rule:
+ * <pre>
+ * BOGOF_APPLE = BUY_GET APPLE 1 1          # buy 1 apple, get 1 free
+ * ORANGES_3_FOR_50 = MULTI_BUY ORANGE 3 50 # 3 oranges for 50p
+ * APPLES_10_OFF = PERCENT_OFF APPLE 10     # 10% off apples, rounded down per unit
+ * FRUIT_BOWL = BUNDLE 70 APPLE ORANGE      # an apple and an orange for 70p
+ * </pre>
+ * Every rule is compiled at load time to the same flat form: a set of products with a quantity of each, and the
+ * parameter which decides the saving each time the whole set is found in the cart. The saving itself is worked out
+ * from the active {@link Catalogue} as the rule is applied, so rules follow a reprice as the built in offers do. Rules
+ * are indexed by their first product, so pricing only looks at rules for products actually in the cart. As with
+ * {@link Offer}, each rule is evaluated independently.
+ */
+public class OfferRules {
+
+    private static final Product[] PRODUCTS = Product.values();
+
+    /**
+     * The kinds of promotion which can be described in a rule file
+     */
+    enum RuleType {
+        BUY_GET, MULTI_BUY, PERCENT_OFF, BUNDLE
+    }
+
+    // Rule names, in the order they were compiled
+    private final String[] ruleNames;
+
+    // The products and quantities of rule r are at ruleOffsets[r] until ruleOffsets[r + 1]
+    private final int[] ruleOffsets;
+    private final int[] ruleProducts;
+    private final int[] ruleQuantities;
+    // The quantity free, offer price or percentage, depending on the rule's type
+    private final RuleType[] ruleTypes;
+    private final long[] ruleParameters;
+
+    // The rules whose first product is p are at productRules[productOffsets[p]] until productOffsets[p + 1]
+    private final int[] productOffsets;
+    private final int[] productRules;
+
+    private OfferRules(final List<String> names, final List<int[]> products, final List<int[]> quantities, final List<RuleType> types,
+                       final List<Long> parameters) {
+        int ruleCount = names.size();
+        ruleNames = names.toArray(new String[ruleCount]);
+        ruleTypes = types.toArray(new RuleType[ruleCount]);
+        ruleParameters = new long[ruleCount];
+        ruleOffsets = new int[ruleCount + 1];
+        for (int rule = 0; rule < ruleCount; rule++) {
+            ruleParameters[rule] = parameters.get(rule);
+            ruleOffsets[rule + 1] = ruleOffsets[rule] + products.get(rule).length;
+        }
+
+        ruleProducts = new int[ruleOffsets[ruleCount]];
+        ruleQuantities = new int[ruleOffsets[ruleCount]];
+        int productCount = Product.values().length;
+        productOffsets = new int[productCount + 1];
+        for (int rule = 0; rule < ruleCount; rule++) {
+            System.arraycopy(products.get(rule), 0, ruleProducts, ruleOffsets[rule], products.get(rule).length);
+            System.arraycopy(quantities.get(rule), 0, ruleQuantities, ruleOffsets[rule], quantities.get(rule).length);
+            productOffsets[products.get(rule)[0] + 1]++;
+        }
+        for (int product = 0; product < productCount; product++) {
+            productOffsets[product + 1] += productOffsets[product];
+        }
+
+        productRules = new int[ruleCount];
+        int[] next = Arrays.copyOf(productOffsets, productCount);
+        for (int rule = 0; rule < ruleCount; rule++) {
+            productRules[next[products.get(rule)[0]]++] = rule;
+        }
+    }
+
+    /**
+     * Loads and compiles rules from a properties file
+     *
+     * @param file The rule file
+     * @return The compiled rules
+     * @throws IOException If the file can't be read
+     */
+    public static OfferRules load(final Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Loads and compiles rules in properties format
+     *
+     * @param reader The rule definitions
+     * @return The compiled rules
+     * @throws IOException If the rules can't be read
+     */
+    public static OfferRules load(final Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+
+        List<String> names = new ArrayList<>();
+        List<int[]> products = new ArrayList<>();
+        List<int[]> quantities = new ArrayList<>();
+        List<RuleType> types = new ArrayList<>();
+        List<Long> parameters = new ArrayList<>();
+
+        // Sort by name so the compiled order doesn't depend on the properties hash order
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            String[] tokens = properties.getProperty(name).trim().split("\\s+");
+            int[] productCounts = new int[Product.values().length];
+            RuleType type;
+            long parameter;
+            try {
+                type = RuleType.valueOf(tokens[0].toUpperCase(Locale.ROOT));
+                parameter = compile(type, tokens, productCounts);
+            } catch (final RuntimeException e) {
+                throw new IllegalArgumentException("Invalid offer rule " + name + " = " + properties.getProperty(name), e);
+            }
+
+            int productsInRule = 0;
+            for (int count : productCounts) {
+                productsInRule += count > 0 ? 1 : 0;
+            }
+            int[] ruleProducts = new int[productsInRule];
+            int[] ruleQuantities = new int[productsInRule];
+            for (int product = 0, i = 0; product < productCounts.length; product++) {
+                if (productCounts[product] > 0) {
+                    ruleProducts[i] = product;
+                    ruleQuantities[i++] = productCounts[product];
+                }
+            }
+
+            if (saving(type, parameter, ruleProducts, ruleQuantities, 0, productsInRule) <= 0) {
+                throw new IllegalArgumentException("Offer rule " + name + " doesn't save any money");
+            }
+
+            names.add(name);
+            products.add(ruleProducts);
+            quantities.add(ruleQuantities);
+            types.add(type);
+            parameters.add(parameter);
+        }
+        return new OfferRules(names, products, quantities, types, parameters);
+    }
+
+    /**
+     * Reduces a rule definition to the quantity of each product it needs
+     *
+     * @param type          The type of the rule
+     * @param tokens        The rule definition, starting with the type
+     * @param productCounts Filled with the quantity of each product needed for the rule to apply once
+     * @return The quantity free, offer price or percentage which decides the rule's saving
+     * @throws IllegalArgumentException If the definition has the wrong number of values or a value is out of range
+     */
+    private static long compile(final RuleType type, final String[] tokens, final int[] productCounts) {
+        switch (type) {
+            case BUY_GET: {
+                expectTokens(tokens, 4);
+                Product product = parseProduct(tokens[1]);
+                int buy = parseNumber(tokens[2], "quantity to buy", 1, Integer.MAX_VALUE);
+                int free = parseNumber(tokens[3], "quantity free", 1, Integer.MAX_VALUE);
+                productCounts[product.ordinal()] = Math.addExact(buy, free);
+                return free;
+            }
+            case MULTI_BUY: {
+                expectTokens(tokens, 4);
+                Product product = parseProduct(tokens[1]);
+                int quantity = parseNumber(tokens[2], "quantity", 1, Integer.MAX_VALUE);
+                long fullPrice = quantity * product.getPriceInPence();
+                productCounts[product.ordinal()] = quantity;
+                return parsePrice(tokens[3], fullPrice);
+            }
+            case PERCENT_OFF: {
+                expectTokens(tokens, 3);
+                Product product = parseProduct(tokens[1]);
+                productCounts[product.ordinal()] = 1;
+                return parseNumber(tokens[2], "percentage", 1, 100);
+            }
+            case BUNDLE: {
+                if (tokens.length < 3) {
+                    throw new IllegalArgumentException("A bundle needs a price and at least one product");
+                }
+                long fullPrice = 0;
+                for (int i = 2; i < tokens.length; i++) {
+                    Product product = parseProduct(tokens[i]);
+                    productCounts[product.ordinal()]++;
+                    fullPrice += product.getPriceInPence();
+                }
+                return parsePrice(tokens[1], fullPrice);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported rule type " + type);
+        }
+    }
+
+    /**
+     * Works out the saving each time a rule applies at the active catalogue's prices
+     *
+     * @param from The index of the rule's first product in products and quantities
+     * @param to   The index just after the rule's last product
+     * @return The saving in pence, or zero if a reprice has left the offer price at or above the full price
+     */
+    private static long saving(final RuleType type, final long parameter, final int[] products, final int[] quantities, final int from, final int to) {
+        Catalogue catalogue = Catalogue.getActive();
+        switch (type) {
+            case BUY_GET:
+                return parameter * catalogue.getPriceInPence(PRODUCTS[products[from]]);
+            case PERCENT_OFF:
+                return catalogue.getPriceInPence(PRODUCTS[products[from]]) * parameter / 100;
+            case MULTI_BUY:
+            case BUNDLE: {
+                long fullPrice = 0;
+                for (int i = from; i < to; i++) {
+                    fullPrice += quantities[i] * catalogue.getPriceInPence(PRODUCTS[products[i]]);
+                }
+                return Math.max(0, fullPrice - parameter);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported rule type " + type);
+        }
+    }
+
+    private static void expectTokens(final String[] tokens, final int count) {
+        if (tokens.length != count) {
+            throw new IllegalArgumentException("A " + tokens[0] + " rule takes " + (count - 1) + " values but has " + (tokens.length - 1));
+        }
+    }
+
+    private static int parseNumber(final String token, final String name, final int min, final int max) {
+        int number = Integer.parseInt(token);
+        if (number < min || number > max) {
+            throw new IllegalArgumentException("The " + name + " must be between " + min + " and " + max + ": " + number);
+        }
+        return number;
+    }
+
+    /**
+     * @param fullPrice The price of the products without the offer
+     * @return The offer price, which must be below the full price
+     */
+    private static long parsePrice(final String token, final long fullPrice) {
+        long price = parseNumber(token, "price", 0, Integer.MAX_VALUE);
+        if (price >= fullPrice) {
+            throw new IllegalArgumentException("The price " + price + " must be below the full price " + fullPrice);
+        }
+        return price;
+    }
+
+    private static Product parseProduct(final String name) {
+        Product product = ProductNameParser.parse(name);
+        if (product == null) {
+            throw new IllegalArgumentException("Unknown product " + name);
+        }
+        return product;
+    }
+
+    /**
+     * @return The number of compiled rules
+     */
+    public int size() {
+        return ruleNames.length;
+    }
+
+    /**
+     * @param rule The index of a rule
+     * @return The name the rule was defined with
+     */
+    public String getRuleName(final int rule) {
+        return ruleNames[rule];
+    }
+
+    /**
+     * @param rule The index of a rule
+     * @return The quantity of each {@link Product} the rule needs to apply once, indexed by {@link Product#ordinal()}
+     */
+    int[] getRuleQuantities(final int rule) {
+        int[] productCounts = new int[Product.values().length];
+        for (int i = ruleOffsets[rule]; i < ruleOffsets[rule + 1]; i++) {
+            productCounts[ruleProducts[i]] = ruleQuantities[i];
+        }
+        return productCounts;
+    }
+
+    /**
+     * @param rule The index of a rule
+     * @return The saving in pence each time the rule applies, at the active catalogue's prices
+     */
+    long getRuleSaving(final int rule) {
+        return saving(ruleTypes[rule], ruleParameters[rule], ruleProducts, ruleQuantities, ruleOffsets[rule], ruleOffsets[rule + 1]);
+    }
+
+    /**
+     * Applies every rule to a cart, only visiting rules for the products in it
+     *
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @return Details of the rules which applied
+     */
+    public Offer.AppliedOffers apply(final int[] productCounts) {
+        Offer.AppliedOffers appliedOffers = new Offer.AppliedOffers();
+        for (int product = 0; product < productCounts.length; product++) {
+            if (productCounts[product] == 0) {
+                continue;
+            }
+            for (int i = productOffsets[product]; i < productOffsets[product + 1]; i++) {
+                int rule = productRules[i];
+                int timesApplied = Integer.MAX_VALUE;
+                for (int j = ruleOffsets[rule]; j < ruleOffsets[rule + 1]; j++) {
+                    timesApplied = Math.min(timesApplied, productCounts[ruleProducts[j]] / ruleQuantities[j]);
+                }
+                // A rule left saving nothing by a reprice isn't reported, as if it hadn't applied
+                long saving = timesApplied > 0 ? getRuleSaving(rule) : 0;
+                if (saving > 0) {
+                    appliedOffers.add(ruleNames[rule], timesApplied, saving);
+                }
+            }
+        }
+        return appliedOffers;
+    }
+}
@@ -0,0 +1,175 @@
+package com.martynhaigh.checkout;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least recently used cache of basket prices, keyed by the quantity of each {@link Product} in the basket.
+ * <p>
+ * Entries are dropped automatically when the active {@link Catalogue} changes, or when the offers are replaced through
+ * {@link #setOfferRules(OfferRules)}, and baskets are then priced again with offer savings at the new prices. Hit, miss
+ * and eviction counts are kept to help size the cache.
+ */
+public class PricingCache {
+
+    private final int maximumSize;
+    private final Map<BasketKey, PricedBasket> entries;
+
+    // The prices and offers the cached entries were calculated with
+    private Catalogue catalogue;
+    private OfferRules offerRules;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache pricing baskets with the built in {@link Offer} constants
+     *
+     * @param maximumSize The maximum number of baskets to hold
+     */
+    public PricingCache(final int maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * Creates a cache pricing baskets with data driven offers
+     *
+     * @param maximumSize The maximum number of baskets to hold
+     * @param offerRules  The offers to apply, or null for the built in {@link Offer} constants
+     */
+    public PricingCache(final int maximumSize, final OfferRules offerRules) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.offerRules = offerRules;
+        catalogue = Catalogue.getActive();
+        entries = new LinkedHashMap<BasketKey, PricedBasket>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<BasketKey, PricedBasket> eldest) {
+                if (size() > PricingCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Replaces the offers applied to baskets, dropping every cached price
+     *
+     * @param offerRules The offers to apply, or null for the built in {@link Offer} constants
+     */
+    public synchronized void setOfferRules(final OfferRules offerRules) {
+        this.offerRules = offerRules;
+        entries.clear();
+    }
+
+    /**
+     * Gets the total price of a basket, with offers applied
+     *
+     * @param productCounts The quantity of each {@link Product} in the basket, indexed by {@link Product#ordinal()}
+     * @return total price in pennies
+     */
+    public long getTotalCost(final int[] productCounts) {
+        return get(productCounts).totalCost;
+    }
+
+    /**
+     * Gets the offers applied to a basket
+     *
+     * @param productCounts The quantity of each {@link Product} in the basket, indexed by {@link Product#ordinal()}
+     * @return Details of offers applied
+     */
+    public Offer.AppliedOffers getAppliedOffers(final int[] productCounts) {
+        return get(productCounts).appliedOffers;
+    }
+
+    private synchronized PricedBasket get(final int[] productCounts) {
+        Catalogue activeCatalogue = Catalogue.getActive();
+        if (activeCatalogue != catalogue) {
+            catalogue = activeCatalogue;
+            entries.clear();
+        }
+
+        BasketKey key = new BasketKey(productCounts);
+        PricedBasket pricedBasket = entries.get(key);
+        if (pricedBasket != null) {
+            hits++;
+            return pricedBasket;
+        }
+
+        misses++;
+        Offer.AppliedOffers appliedOffers = offerRules == null ? Offer.applyAllOffers(productCounts) : offerRules.apply(productCounts);
+        pricedBasket = new PricedBasket(Product.getPriceInPence(productCounts) - appliedOffers.getTotalSavings(), appliedOffers);
+        entries.put(new BasketKey(productCounts.clone()), pricedBasket);
+        return pricedBasket;
+    }
+
+    /**
+     * @return The number of baskets currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups answered from the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups which had to price the basket
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of baskets dropped to stay within the maximum size
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Canonical basket key, equal for any two baskets with the same quantity of every product
+     */
+    private static final class BasketKey {
+        private final int[] productCounts;
+        private final int hash;
+
+        BasketKey(final int[] productCounts) {
+            this.productCounts = productCounts;
+            hash = Arrays.hashCode(productCounts);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof BasketKey && Arrays.equals(productCounts, ((BasketKey) other).productCounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Immutable cached price of a basket
+     */
+    private static final class PricedBasket {
+        final long totalCost;
+        final Offer.AppliedOffers appliedOffers;
+
+        PricedBasket(final long totalCost, final Offer.AppliedOffers appliedOffers) {
+            this.totalCost = totalCost;
+            this.appliedOffers = appliedOffers;
+        }
+    }
+}
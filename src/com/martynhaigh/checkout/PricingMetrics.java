@@ -0,0 +1,278 @@
+package com.martynhaigh.checkout;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low overhead instrumentation of the pricing pipeline, recording latency histograms per stage and per {@link Offer}
+ * alongside counts of items scanned, invalid names rejected and offers applied.
+ * <p>
+ * Disabled unless the JVM is started with {@code -Dcheckout.metrics=true}. The switch is a static final constant, so
+ * when it is off the JIT removes every recording call, including the clock reads. When on, the metrics are registered
+ * with JMX as {@value #OBJECT_NAME} and can be dumped as text with {@link #dump()}.
+ * <p>
+ * Counts are exact, but only a random one in {@code -Dcheckout.metrics.sampleInterval} calls, 64 by default, is
+ * timed, as a clock read and histogram record cost more than pricing a small cart. The histograms therefore count
+ * samples rather than calls. Each thread keeps its own counts, written with ordered stores rather than atomic adds as
+ * only that thread writes them, and the counts are added up when read.
+ */
+public final class PricingMetrics implements PricingMetricsMBean {
+
+    static final boolean ENABLED = Boolean.getBoolean("checkout.metrics");
+    static final String OBJECT_NAME = "com.martynhaigh.checkout:type=PricingMetrics";
+
+    // A power of two, so choosing the calls to time is a mask of a thread local random number
+    static final int SAMPLE_INTERVAL = Integer.highestOneBit(Math.max(1, Integer.getInteger("checkout.metrics.sampleInterval", 64)));
+    private static final int SAMPLE_MASK = SAMPLE_INTERVAL - 1;
+    private static final long NOT_SAMPLED = 0;
+
+    // Indexes of the counts kept by each thread
+    private static final int ITEMS_SCANNED = 0;
+    private static final int INVALID_NAMES_REJECTED = 1;
+    private static final int OFFERS_APPLIED = 2;
+    private static final int COUNT_TYPES = 3;
+
+    // How many threads start counting between sweeps for threads which have exited
+    private static final int SWEEP_INTERVAL = 256;
+
+    // Track latencies up to a minute at three significant digits
+    private static final long HIGHEST_TRACKABLE_NANOS = 60_000_000_000L;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * The instrumented stages of pricing a cart
+     */
+    public enum Stage {
+        PARSE_SHOPPING_LIST, ADD_ITEMS_TO_CART, APPLY_OFFERS, PRINTOUT
+    }
+
+    private final Histogram[] stageLatencies = new Histogram[Stage.values().length];
+    private final Histogram[] offerLatencies = new Histogram[Offer.values().length];
+    private final ThreadLocal<ThreadCounts> threadCounts = ThreadLocal.withInitial(this::startCounting);
+    private final Queue<ThreadCounts> liveThreadCounts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger threadsSinceSweep = new AtomicInteger();
+    // The counts of threads which have exited, and the totals when the metrics were last reset
+    private final AtomicLongArray exitedThreadCounts = new AtomicLongArray(COUNT_TYPES);
+    private final AtomicLongArray countsAtReset = new AtomicLongArray(COUNT_TYPES);
+
+    /**
+     * Creates the metrics on first use, so a disabled run never loads the histogram classes or touches JMX
+     */
+    private static final class Holder {
+        static final PricingMetrics INSTANCE = new PricingMetrics();
+
+        static {
+            if (ENABLED) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+                } catch (final JMException e) {
+                    // Metrics are still recorded and can be dumped, they just aren't visible over JMX
+                    System.err.println("Unable to register pricing metrics with JMX: " + e);
+                }
+            }
+        }
+    }
+
+    private PricingMetrics() {
+        for (int i = 0; i < stageLatencies.length; i++) {
+            stageLatencies[i] = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        }
+        for (int i = 0; i < offerLatencies.length; i++) {
+            offerLatencies[i] = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        }
+    }
+
+    /**
+     * @return The metrics instance, also registered with JMX when enabled
+     */
+    public static PricingMetrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return The start time to pass to a later record call, or 0 when metrics are disabled or this call isn't timed
+     */
+    static long start() {
+        if (ENABLED && (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0) {
+            return System.nanoTime();
+        }
+        return NOT_SAMPLED;
+    }
+
+    static void recordStage(final Stage stage, final long startNanos) {
+        if (ENABLED && startNanos != NOT_SAMPLED) {
+            Holder.INSTANCE.stageLatencies[stage.ordinal()].recordValue(Math.min(System.nanoTime() - startNanos, HIGHEST_TRACKABLE_NANOS));
+        }
+    }
+
+    static void recordOffer(final Offer offer, final long startNanos, final int timesApplied) {
+        if (ENABLED) {
+            if (startNanos != NOT_SAMPLED) {
+                Holder.INSTANCE.offerLatencies[offer.ordinal()].recordValue(Math.min(System.nanoTime() - startNanos, HIGHEST_TRACKABLE_NANOS));
+            }
+            offersApplied(timesApplied);
+        }
+    }
+
+    static void offersApplied(final int count) {
+        if (ENABLED && count != 0) {
+            Holder.INSTANCE.threadCounts.get().add(OFFERS_APPLIED, count);
+        }
+    }
+
+    static void invalidNameRejected() {
+        if (ENABLED) {
+            Holder.INSTANCE.threadCounts.get().add(INVALID_NAMES_REJECTED, 1);
+        }
+    }
+
+    /**
+     * Counts items scanned and the offers they applied together, looking up the thread's counts once
+     */
+    static void itemsScanned(final int count, final int offersApplied) {
+        if (ENABLED) {
+            ThreadCounts counts = Holder.INSTANCE.threadCounts.get();
+            counts.add(ITEMS_SCANNED, count);
+            counts.add(OFFERS_APPLIED, offersApplied);
+        }
+    }
+
+    /**
+     * Registers a thread's counts the first time it counts anything, folding in the counts of threads which have
+     * exited every so often, so only live threads are held on to
+     */
+    private ThreadCounts startCounting() {
+        if (threadsSinceSweep.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            for (Iterator<ThreadCounts> iterator = liveThreadCounts.iterator(); iterator.hasNext(); ) {
+                ThreadCounts counts = iterator.next();
+                Thread owner = counts.owner.get();
+                if (owner == null || !owner.isAlive()) {
+                    // Removed first, so a reader adding up the counts might miss them briefly but never sees them twice
+                    iterator.remove();
+                    for (int type = 0; type < COUNT_TYPES; type++) {
+                        exitedThreadCounts.addAndGet(type, counts.counts.get(type));
+                    }
+                }
+            }
+        }
+        ThreadCounts counts = new ThreadCounts(Thread.currentThread());
+        liveThreadCounts.add(counts);
+        return counts;
+    }
+
+    private long sum(final int type) {
+        long sum = exitedThreadCounts.get(type);
+        for (ThreadCounts counts : liveThreadCounts) {
+            sum += counts.counts.get(type);
+        }
+        return sum;
+    }
+
+    @Override
+    public long getInvalidNamesRejected() {
+        return sum(INVALID_NAMES_REJECTED) - countsAtReset.get(INVALID_NAMES_REJECTED);
+    }
+
+    @Override
+    public long getItemsScanned() {
+        return sum(ITEMS_SCANNED) - countsAtReset.get(ITEMS_SCANNED);
+    }
+
+    @Override
+    public long getOffersApplied() {
+        return sum(OFFERS_APPLIED) - countsAtReset.get(OFFERS_APPLIED);
+    }
+
+    /**
+     * @return The number of latencies sampled for a stage
+     */
+    long getStageCount(final Stage stage) {
+        return stageLatencies[stage.ordinal()].getTotalCount();
+    }
+
+    /**
+     * @return The number of latencies sampled for an offer
+     */
+    long getOfferCount(final Offer offer) {
+        return offerLatencies[offer.ordinal()].getTotalCount();
+    }
+
+    @Override
+    public long getStageLatencyNanos(final String stage, final double percentile) {
+        return stageLatencies[Stage.valueOf(stage).ordinal()].getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public long getOfferLatencyNanos(final String offer, final double percentile) {
+        return offerLatencies[Offer.valueOf(offer).ordinal()].getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        dump.append("items scanned: ").append(getItemsScanned()).append('\n');
+        dump.append("invalid names rejected: ").append(getInvalidNamesRejected()).append('\n');
+        dump.append("offers applied: ").append(getOffersApplied()).append('\n');
+        for (Stage stage : Stage.values()) {
+            appendLatencies(dump, "stage " + stage, stageLatencies[stage.ordinal()]);
+        }
+        for (Offer offer : Offer.values()) {
+            appendLatencies(dump, "offer " + offer, offerLatencies[offer.ordinal()]);
+        }
+        return dump.toString();
+    }
+
+    private static void appendLatencies(final StringBuilder dump, final String name, final Histogram histogram) {
+        dump.append(name)
+                .append(": count=").append(histogram.getTotalCount())
+                .append(" p50=").append(histogram.getValueAtPercentile(50)).append("ns")
+                .append(" p99=").append(histogram.getValueAtPercentile(99)).append("ns")
+                .append(" p999=").append(histogram.getValueAtPercentile(99.9)).append("ns")
+                .append(" max=").append(histogram.getMaxValue()).append("ns")
+                .append('\n');
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : stageLatencies) {
+            histogram.reset();
+        }
+        for (Histogram histogram : offerLatencies) {
+            histogram.reset();
+        }
+        // Only the owning thread writes its counts, so they are offset rather than cleared
+        for (int type = 0; type < COUNT_TYPES; type++) {
+            countsAtReset.set(type, sum(type));
+        }
+    }
+
+    /**
+     * The counts kept by one thread
+     */
+    private static final class ThreadCounts {
+        final WeakReference<Thread> owner;
+        final AtomicLongArray counts = new AtomicLongArray(COUNT_TYPES);
+
+        ThreadCounts(final Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        /**
+         * Only called by the owning thread, so an ordered store is enough for readers to see the new count
+         */
+        void add(final int type, final long count) {
+            counts.lazySet(type, counts.get(type) + count);
+        }
+    }
+}
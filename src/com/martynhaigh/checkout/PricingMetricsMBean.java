@@ -0,0 +1,37 @@
+package com.martynhaigh.checkout;
+
+/**
+ * JMX view of {@link PricingMetrics}
+ */
+public interface PricingMetricsMBean {
+
+    long getInvalidNamesRejected();
+
+    long getItemsScanned();
+
+    long getOffersApplied();
+
+    /**
+     * @param stage      The name of a {@link PricingMetrics.Stage}
+     * @param percentile The percentile to report, between 0 and 100
+     * @return The latency at the percentile in nanoseconds
+     */
+    long getStageLatencyNanos(String stage, double percentile);
+
+    /**
+     * @param offer      The name of an {@link Offer}
+     * @param percentile The percentile to report, between 0 and 100
+     * @return The latency at the percentile in nanoseconds
+     */
+    long getOfferLatencyNanos(String offer, double percentile);
+
+    /**
+     * @return A text summary of every counter and latency histogram
+     */
+    String dump();
+
+    /**
+     * Clears every counter and latency histogram
+     */
+    void reset();
+}
@@ -1,20 +1,60 @@
 package com.martynhaigh.checkout;
 
+import java.util.List;
+
 public enum Product {
     APPLE(60), ORANGE(25);
 
     // Operate in pence for memory size considerations and ease
-    private final int priceInPence;
+    private final long priceInPence;
 
-    Product(final int priceInPence) {
+    Product(final long priceInPence) {
         this.priceInPence = priceInPence;
     }
 
     /**
-     * Get the product cost
+     * Get the product cost from the active {@link Catalogue}
      * @return The product cost in pence
      */
-    public int getPriceInPence() {
+    public long getPriceInPence() {
+        return Catalogue.getActive().getPriceInPence(this);
+    }
+
+    /**
+     * Get the built in product cost, used to seed the built in {@link Catalogue}
+     * @return The product cost in pence
+     */
+    long getSeedPriceInPence() {
         return priceInPence;
     }
+
+    /**
+     * Builds a quantity histogram of the given products in a single pass
+     * @param products The products to count, null values are ignored
+     * @return The quantity of each product, indexed by {@link Product#ordinal()}
+     */
+    public static int[] countProducts(List<Product> products) {
+        int[] productCounts = new int[values().length];
+        if (products != null) {
+            for (Product product : products) {
+                if (product != null) {
+                    productCounts[product.ordinal()]++;
+                }
+            }
+        }
+        return productCounts;
+    }
+
+    /**
+     * Get the cost of a number of products before any offers are applied
+     * @param productCounts The quantity of each product, indexed by {@link Product#ordinal()}
+     * @return The total cost in pence
+     */
+    public static long getPriceInPence(int[] productCounts) {
+        long total = 0;
+        for (Product product : values()) {
+            total += productCounts[product.ordinal()] * product.getPriceInPence();
+        }
+        return total;
+    }
 }
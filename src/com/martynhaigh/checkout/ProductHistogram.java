@@ -0,0 +1,197 @@
+package com.martynhaigh.checkout;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Counts every {@link Product} in a basket stored as an array of ordinals, in a single pass.
+ * <p>
+ * While there are only a handful of products, byte ordinals are counted eight at a time by treating each long read from
+ * the array as eight lanes and counting the lanes equal to each ordinal with bit arithmetic. Otherwise, and for short
+ * ordinals, a scalar loop spreads its increments over several histograms so that consecutive equal ordinals don't
+ * wait on each other's stores.
+ * <p>
+ * When the checkout is built with the {@code vector} profile and the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, arrays of byte ordinals are counted with the JDK Vector API instead, a
+ * full SIMD register at a time, while there are only a handful of products. Otherwise the lanes above are used.
+ * <p>
+ * The lane and vector paths reject an ordinal which isn't a product with an {@link IllegalArgumentException}. The
+ * scalar loops only check the ordinals against the bounds of their histograms.
+ */
+public final class ProductHistogram {
+
+    // Beyond this many products a pass per product, over lanes or vectors, costs more than the scalar loop
+    private static final int MAX_LANE_PRODUCTS = 4;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ONES = 0x0101010101010101L;
+
+    // The Vector API kernel, or null if it wasn't built or the incubator module isn't loaded
+    private static final Kernel VECTOR_KERNEL = loadVectorKernel();
+
+    /**
+     * Adds the products in part of an array of byte ordinals to a set of counts
+     */
+    interface Kernel {
+        /**
+         * @param ordinals      Product ordinals, one per unit
+         * @param from          The index of the first unit, inclusive
+         * @param to            The index of the last unit, exclusive
+         * @param productCounts The counts to add to, indexed by {@link Product#ordinal()}
+         * @throws IllegalArgumentException If an ordinal isn't a product
+         */
+        void count(byte[] ordinals, int from, int to, int[] productCounts);
+    }
+
+    private ProductHistogram() {
+    }
+
+    /**
+     * @param ordinals Product ordinals, one per unit
+     * @return The quantity of each product, indexed by {@link Product#ordinal()}
+     */
+    public static int[] count(final byte[] ordinals) {
+        return count(ordinals, 0, ordinals.length);
+    }
+
+    /**
+     * @param ordinals Product ordinals, one per unit
+     * @param from     The index of the first unit, inclusive
+     * @param to       The index of the last unit, exclusive
+     * @return The quantity of each product, indexed by {@link Product#ordinal()}
+     */
+    public static int[] count(final byte[] ordinals, final int from, final int to) {
+        if (Product.values().length > MAX_LANE_PRODUCTS) {
+            return countScalar(ordinals, from, to);
+        }
+        int[] productCounts = new int[Product.values().length];
+        if (VECTOR_KERNEL != null) {
+            VECTOR_KERNEL.count(ordinals, from, to, productCounts);
+        } else {
+            count(ByteBuffer.wrap(ordinals), from, to, productCounts);
+        }
+        return productCounts;
+    }
+
+    /**
+     * @return Whether arrays of byte ordinals are counted with the JDK Vector API
+     */
+    static boolean isVectorised() {
+        return VECTOR_KERNEL != null;
+    }
+
+    private static Kernel loadVectorKernel() {
+        try {
+            return (Kernel) Class.forName(ProductHistogram.class.getPackage().getName() + ".VectorProductHistogram")
+                    .getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the products in part of a buffer of byte ordinals to a set of counts, without changing the position of the
+     * buffer. This lets ordinals be counted where they are in a mapped file.
+     *
+     * @param ordinals      Product ordinals, one per unit
+     * @param from          The index of the first unit, inclusive
+     * @param to            The index of the last unit, exclusive
+     * @param productCounts The counts to add to, indexed by {@link Product#ordinal()}
+     * @throws IllegalArgumentException If an ordinal isn't a product
+     */
+    static void count(final ByteBuffer ordinals, final int from, final int to, final int[] productCounts) {
+        int productCount = productCounts.length;
+        int index = from;
+        if (productCount <= MAX_LANE_PRODUCTS) {
+            for (; index + Long.BYTES <= to; index += Long.BYTES) {
+                long lanes = ordinals.getLong(index);
+                // Every product is matched, so a lane holding anything else leaves the long short of a full count
+                int counted = 0;
+                for (int product = 0; product < productCount; product++) {
+                    int matches = countZeroLanes(lanes ^ (product * ONES));
+                    productCounts[product] += matches;
+                    counted += matches;
+                }
+                if (counted != Long.BYTES) {
+                    throw invalidOrdinal(index);
+                }
+            }
+        }
+        for (; index < to; index++) {
+            int product = ordinals.get(index) & 0xFF;
+            if (product >= productCount) {
+                throw invalidOrdinal(index);
+            }
+            productCounts[product]++;
+        }
+    }
+
+    static IllegalArgumentException invalidOrdinal(final int index) {
+        return new IllegalArgumentException("Not a product ordinal at or just after index " + index);
+    }
+
+    /**
+     * Counts the lanes of a long which are zero. Masking off the top bit of each lane before adding means the
+     * addition can't carry between lanes, so the result is exact.
+     */
+    private static int countZeroLanes(final long lanes) {
+        long nonZero = ((lanes & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | lanes;
+        return Long.bitCount(~nonZero & HIGH_BITS);
+    }
+
+    /**
+     * Counts byte ordinals one at a time, for comparison and for catalogues with many products
+     *
+     * @param ordinals Product ordinals, one per unit
+     * @param from     The index of the first unit, inclusive
+     * @param to       The index of the last unit, exclusive
+     * @return The quantity of each product, indexed by {@link Product#ordinal()}
+     */
+    static int[] countScalar(final byte[] ordinals, final int from, final int to) {
+        int productCount = Product.values().length;
+        int[] first = new int[productCount];
+        int[] second = new int[productCount];
+        int[] third = new int[productCount];
+        int[] fourth = new int[productCount];
+        int index = from;
+        for (; index + 4 <= to; index += 4) {
+            first[ordinals[index] & 0xFF]++;
+            second[ordinals[index + 1] & 0xFF]++;
+            third[ordinals[index + 2] & 0xFF]++;
+            fourth[ordinals[index + 3] & 0xFF]++;
+        }
+        for (; index < to; index++) {
+            first[ordinals[index] & 0xFF]++;
+        }
+        return merge(first, second, third, fourth);
+    }
+
+    /**
+     * @param ordinals Product ordinals, one per unit
+     * @return The quantity of each product, indexed by {@link Product#ordinal()}
+     */
+    public static int[] count(final short[] ordinals) {
+        int productCount = Product.values().length;
+        int[] first = new int[productCount];
+        int[] second = new int[productCount];
+        int[] third = new int[productCount];
+        int[] fourth = new int[productCount];
+        int index = 0;
+        for (; index + 4 <= ordinals.length; index += 4) {
+            first[ordinals[index] & 0xFFFF]++;
+            second[ordinals[index + 1] & 0xFFFF]++;
+            third[ordinals[index + 2] & 0xFFFF]++;
+            fourth[ordinals[index + 3] & 0xFFFF]++;
+        }
+        for (; index < ordinals.length; index++) {
+            first[ordinals[index] & 0xFFFF]++;
+        }
+        return merge(first, second, third, fourth);
+    }
+
+    private static int[] merge(final int[] first, final int[] second, final int[] third, final int[] fourth) {
+        for (int product = 0; product < first.length; product++) {
+            first[product] += second[product] + third[product] + fourth[product];
+        }
+        return first;
+    }
+}
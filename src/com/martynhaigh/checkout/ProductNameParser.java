@@ -0,0 +1,129 @@
+package com.martynhaigh.checkout;
+
+/**
+ * Allocation free lookup of {@link Product} names.
+ * <p>
+ * Matches are case insensitive and ignore leading and trailing whitespace, following the same rules as
+ * {@link String#toUpperCase()} and {@link String#trim()} but without creating any intermediate Strings or throwing
+ * on unknown names.
+ */
+final class ProductNameParser {
+
+    // The length of the longest product name, anything longer once trimmed can't match
+    static final int MAX_NAME_LENGTH;
+
+    // Upper case product names bucketed by length, so a lookup only compares against names that could match
+    private static final char[][][] NAMES_BY_LENGTH;
+    private static final Product[][] PRODUCTS_BY_LENGTH;
+
+    static {
+        Product[] products = Product.values();
+        int maxLength = 0;
+        for (Product product : products) {
+            maxLength = Math.max(maxLength, product.name().length());
+        }
+
+        int[] bucketSizes = new int[maxLength + 1];
+        for (Product product : products) {
+            bucketSizes[product.name().length()]++;
+        }
+
+        MAX_NAME_LENGTH = maxLength;
+        NAMES_BY_LENGTH = new char[maxLength + 1][][];
+        PRODUCTS_BY_LENGTH = new Product[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            NAMES_BY_LENGTH[length] = new char[bucketSizes[length]][];
+            PRODUCTS_BY_LENGTH[length] = new Product[bucketSizes[length]];
+        }
+
+        int[] bucketIndex = new int[maxLength + 1];
+        for (Product product : products) {
+            int length = product.name().length();
+            NAMES_BY_LENGTH[length][bucketIndex[length]] = product.name().toCharArray();
+            PRODUCTS_BY_LENGTH[length][bucketIndex[length]++] = product;
+        }
+    }
+
+    private ProductNameParser() {
+    }
+
+    /**
+     * Attempts to parse a product name
+     *
+     * @param itemName The name of the item to parse
+     * @return A valid {@link Product} or null
+     */
+    static Product parse(final CharSequence itemName) {
+        return parse(itemName, 0, itemName.length());
+    }
+
+    /**
+     * Attempts to parse a product name from a range of characters
+     *
+     * @param chars The characters containing the name
+     * @param start The index of the first character, inclusive
+     * @param end   The index of the last character, exclusive
+     * @return A valid {@link Product} or null
+     */
+    static Product parse(final CharSequence chars, int start, int end) {
+        while (start < end && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int length = end - start;
+        if (length >= NAMES_BY_LENGTH.length) {
+            return null;
+        }
+
+        char[][] candidates = NAMES_BY_LENGTH[length];
+        candidates:
+        for (int candidate = 0; candidate < candidates.length; candidate++) {
+            char[] name = candidates[candidate];
+            for (int i = 0; i < length; i++) {
+                if (Character.toUpperCase(chars.charAt(start + i)) != name[i]) {
+                    continue candidates;
+                }
+            }
+            return PRODUCTS_BY_LENGTH[length][candidate];
+        }
+        return null;
+    }
+
+    /**
+     * Attempts to parse a product name from a range of ASCII encoded bytes
+     *
+     * @param bytes The bytes containing the name
+     * @param start The index of the first byte, inclusive
+     * @param end   The index of the last byte, exclusive
+     * @return A valid {@link Product} or null
+     */
+    static Product parse(final byte[] bytes, int start, int end) {
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+
+        int length = end - start;
+        if (length >= NAMES_BY_LENGTH.length) {
+            return null;
+        }
+
+        char[][] candidates = NAMES_BY_LENGTH[length];
+        candidates:
+        for (int candidate = 0; candidate < candidates.length; candidate++) {
+            char[] name = candidates[candidate];
+            for (int i = 0; i < length; i++) {
+                if (Character.toUpperCase((char) (bytes[start + i] & 0xFF)) != name[i]) {
+                    continue candidates;
+                }
+            }
+            return PRODUCTS_BY_LENGTH[length][candidate];
+        }
+        return null;
+    }
+}
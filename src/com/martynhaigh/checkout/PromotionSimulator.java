@@ -0,0 +1,314 @@
+package com.martynhaigh.checkout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Works out what a set of historical baskets would have cost under candidate promotions, each scenario being a set of
+ * {@link OfferRules}.
+ * <p>
+ * Baskets are held in columns, one array per {@link Product} holding its quantity in each basket. Every rule in every
+ * scenario is reduced to its pattern, the quantity of each product it needs, and scenarios which only differ in their
+ * savings share the same patterns. Each pattern is then counted over the columns in one tight loop per chunk of
+ * baskets, with chunks counted in parallel, and the savings of every scenario are multiplied out from the counts at
+ * the end. The cost grows with the number of distinct patterns rather than the number of scenarios.
+ */
+public class PromotionSimulator {
+
+    // Below this many baskets a task counts them itself rather than splitting further
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // The quantity of product p in basket b is at columns[p][b]
+    private final int[][] columns;
+    private final int basketCount;
+
+    private PromotionSimulator(final int[][] columns, final int basketCount) {
+        this.columns = columns;
+        this.basketCount = basketCount;
+    }
+
+    /**
+     * Loads every basket in a log written by {@link BasketLogWriter}
+     *
+     * @param log The log to load
+     * @return A simulator over the baskets in the log
+     * @throws IOException If the file can't be read or isn't a complete basket log
+     */
+    public static PromotionSimulator load(final Path log) throws IOException {
+        Builder builder = new Builder();
+        new BasketLogPricer().read(log, builder::add);
+        return builder.build();
+    }
+
+    /**
+     * @return The number of baskets loaded
+     */
+    public int getBasketCount() {
+        return basketCount;
+    }
+
+    /**
+     * Prices every basket under each scenario, applying each rule in a scenario independently as
+     * {@link OfferRules#apply(int[])} does
+     *
+     * @param scenarios The candidate promotions
+     * @return The revenue and savings of each scenario, in the order given
+     */
+    public Results simulate(final List<OfferRules> scenarios) {
+        // Find the distinct patterns and which one each rule counts against
+        Map<String, Integer> patternIndex = new HashMap<>();
+        List<int[]> patterns = new ArrayList<>();
+        int[][] rulePatterns = new int[scenarios.size()][];
+        for (int scenario = 0; scenario < scenarios.size(); scenario++) {
+            OfferRules rules = scenarios.get(scenario);
+            rulePatterns[scenario] = new int[rules.size()];
+            for (int rule = 0; rule < rules.size(); rule++) {
+                int[] quantities = rules.getRuleQuantities(rule);
+                Integer pattern = patternIndex.get(Arrays.toString(quantities));
+                if (pattern == null) {
+                    pattern = patterns.size();
+                    patternIndex.put(Arrays.toString(quantities), pattern);
+                    patterns.add(quantities);
+                }
+                rulePatterns[scenario][rule] = pattern;
+            }
+        }
+
+        // Only the products a pattern needs are looked at
+        int[][] patternProducts = new int[patterns.size()][];
+        int[][] patternQuantities = new int[patterns.size()][];
+        for (int pattern = 0; pattern < patterns.size(); pattern++) {
+            int[] quantities = patterns.get(pattern);
+            int productsInPattern = 0;
+            for (int quantity : quantities) {
+                productsInPattern += quantity > 0 ? 1 : 0;
+            }
+            patternProducts[pattern] = new int[productsInPattern];
+            patternQuantities[pattern] = new int[productsInPattern];
+            for (int product = 0, i = 0; product < quantities.length; product++) {
+                if (quantities[product] > 0) {
+                    patternProducts[pattern][i] = product;
+                    patternQuantities[pattern][i++] = quantities[product];
+                }
+            }
+        }
+
+        long[] counts = ForkJoinPool.commonPool().invoke(new CountTask(columns, patternProducts, patternQuantities, 0, basketCount));
+
+        long fullPrice = 0;
+        for (Product product : Product.values()) {
+            fullPrice = Math.addExact(fullPrice, Math.multiplyExact(counts[product.ordinal()], product.getPriceInPence()));
+        }
+        long[] savings = new long[scenarios.size()];
+        for (int scenario = 0; scenario < scenarios.size(); scenario++) {
+            for (int rule = 0; rule < rulePatterns[scenario].length; rule++) {
+                long timesApplied = counts[columns.length + rulePatterns[scenario][rule]];
+                savings[scenario] = Math.addExact(savings[scenario], Math.multiplyExact(timesApplied, scenarios.get(scenario).getRuleSaving(rule)));
+            }
+        }
+        return new Results(basketCount, fullPrice, savings);
+    }
+
+    /**
+     * Counts a range of baskets, returning the total quantity of each product followed by the number of times each
+     * pattern applies across the range
+     */
+    private static class CountTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] columns;
+        private final int[][] patternProducts;
+        private final int[][] patternQuantities;
+        private final int start;
+        private final int end;
+
+        CountTask(final int[][] columns, final int[][] patternProducts, final int[][] patternQuantities, final int start, final int end) {
+            this.columns = columns;
+            this.patternProducts = patternProducts;
+            this.patternQuantities = patternQuantities;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (end - start > CHUNK_SIZE) {
+                int middle = (start + end) >>> 1;
+                CountTask left = new CountTask(columns, patternProducts, patternQuantities, start, middle);
+                left.fork();
+                long[] counts = new CountTask(columns, patternProducts, patternQuantities, middle, end).compute();
+                long[] leftCounts = left.join();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = Math.addExact(counts[i], leftCounts[i]);
+                }
+                return counts;
+            }
+
+            long[] counts = new long[columns.length + patternProducts.length];
+            for (int product = 0; product < columns.length; product++) {
+                counts[product] = sum(columns[product]);
+            }
+            int[] timesApplied = new int[end - start];
+            for (int pattern = 0; pattern < patternProducts.length; pattern++) {
+                int[] products = patternProducts[pattern];
+                int[] quantities = patternQuantities[pattern];
+                if (products.length == 1) {
+                    // The common case of a single product needs no intermediate array
+                    counts[columns.length + pattern] = sumQuotients(columns[products[0]], quantities[0]);
+                    continue;
+                }
+                // Otherwise take the least number of times any one product allows, one column at a time
+                divide(columns[products[0]], quantities[0], timesApplied);
+                for (int i = 1; i < products.length; i++) {
+                    divideMin(columns[products[i]], quantities[i], timesApplied);
+                }
+                long count = 0;
+                for (int times : timesApplied) {
+                    count += times;
+                }
+                counts[columns.length + pattern] = count;
+            }
+            return counts;
+        }
+
+        private long sum(final int[] column) {
+            long sum = 0;
+            for (int basket = start; basket < end; basket++) {
+                sum += column[basket];
+            }
+            return sum;
+        }
+
+        private long sumQuotients(final int[] column, final int quantity) {
+            if (quantity == 1) {
+                return sum(column);
+            }
+            long sum = 0;
+            for (int basket = start; basket < end; basket++) {
+                sum += column[basket] / quantity;
+            }
+            return sum;
+        }
+
+        private void divide(final int[] column, final int quantity, final int[] timesApplied) {
+            for (int basket = start; basket < end; basket++) {
+                timesApplied[basket - start] = column[basket] / quantity;
+            }
+        }
+
+        private void divideMin(final int[] column, final int quantity, final int[] timesApplied) {
+            for (int basket = start; basket < end; basket++) {
+                timesApplied[basket - start] = Math.min(timesApplied[basket - start], column[basket] / quantity);
+            }
+        }
+    }
+
+    /**
+     * Immutable class describing the outcome of each scenario
+     */
+    public static class Results {
+        private final int basketCount;
+        private final long fullPrice;
+        private final long[] savings;
+
+        Results(final int basketCount, final long fullPrice, final long[] savings) {
+            this.basketCount = basketCount;
+            this.fullPrice = fullPrice;
+            this.savings = savings;
+        }
+
+        /**
+         * @return The number of baskets priced under each scenario
+         */
+        public int getBasketCount() {
+            return basketCount;
+        }
+
+        /**
+         * @return The number of scenarios simulated
+         */
+        public int getScenarioCount() {
+            return savings.length;
+        }
+
+        /**
+         * @return The price of every basket with no promotions at all, in pence
+         */
+        public long getFullPrice() {
+            return fullPrice;
+        }
+
+        /**
+         * @param scenario The index of the scenario in the simulated list
+         * @return The price of every basket under the scenario, in pence
+         */
+        public long getRevenue(final int scenario) {
+            return fullPrice - savings[scenario];
+        }
+
+        /**
+         * @param scenario The index of the scenario in the simulated list
+         * @return The savings from the scenario's promotions across every basket, in pence
+         */
+        public long getSavings(final int scenario) {
+            return savings[scenario];
+        }
+    }
+
+    /**
+     * Collects baskets into columns
+     */
+    public static class Builder {
+
+        private int[][] columns = new int[Product.values().length][16];
+        private int basketCount;
+
+        /**
+         * Adds a basket
+         *
+         * @param productCounts The quantity of each {@link Product} in the basket, indexed by {@link Product#ordinal()}
+         * @return This builder
+         */
+        public Builder add(final int[] productCounts) {
+            if (productCounts.length != columns.length) {
+                throw new IllegalArgumentException("A basket needs a quantity for each of the " + columns.length + " products");
+            }
+            if (basketCount == columns[0].length) {
+                if (basketCount == Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Too many baskets to hold in columns");
+                }
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, basketCount * 2L);
+                for (int product = 0; product < columns.length; product++) {
+                    columns[product] = Arrays.copyOf(columns[product], capacity);
+                }
+            }
+            for (int product = 0; product < columns.length; product++) {
+                if (productCounts[product] < 0) {
+                    throw new IllegalArgumentException("Negative quantity " + productCounts[product] + " of " + Product.values()[product]);
+                }
+                columns[product][basketCount] = productCounts[product];
+            }
+            basketCount++;
+            return this;
+        }
+
+        /**
+         * @return A simulator over the baskets added so far
+         */
+        public PromotionSimulator build() {
+            int[][] trimmed = new int[columns.length][];
+            for (int product = 0; product < columns.length; product++) {
+                trimmed[product] = Arrays.copyOf(columns[product], basketCount);
+            }
+            return new PromotionSimulator(trimmed, basketCount);
+        }
+    }
+}
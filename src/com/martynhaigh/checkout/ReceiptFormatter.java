@@ -0,0 +1,95 @@
+package com.martynhaigh.checkout;
+
+/**
+ * Renders cart printouts and itemised receipts into a reusable {@link StringBuilder}, formatting pence as pounds with
+ * exact integer arithmetic rather than {@link String#format(String, Object...)} and floating point.
+ * <p>
+ * Summary output matches {@link Checkout#CART_PRINTOUT_TEMPLATE} formatted with {@link java.util.Locale#ROOT}
+ * exactly, always with a '.' before the pence. The template formatted in a default locale with a ',' decimal separator
+ * differs. Rendering doesn't allocate beyond growing the builder, so a formatter should be reused, and isn't thread
+ * safe.
+ */
+final class ReceiptFormatter {
+
+    private static final String SUMMARY_ITEMS = " items in cart coming to a total of ";
+    private static final char POUND = '£';
+
+    private final StringBuilder builder = new StringBuilder(128);
+
+    /**
+     * Renders the single line cart printout
+     *
+     * @param itemCount  The number of items in the cart
+     * @param totalPence The cart total, in pence
+     * @return The printout, valid until the formatter is next used
+     */
+    CharSequence formatSummary(final int itemCount, final long totalPence) {
+        builder.setLength(0);
+        appendSummary(itemCount, totalPence);
+        return builder;
+    }
+
+    /**
+     * Renders an itemised receipt, with a line for each product in the cart, a line for each offer applied and the
+     * cart printout as the last line
+     *
+     * @param productCounts The quantity of each {@link Product} in the cart, indexed by {@link Product#ordinal()}
+     * @param appliedOffers The offers applied to the cart
+     * @return The receipt, valid until the formatter is next used
+     */
+    CharSequence formatReceipt(final int[] productCounts, final Offer.AppliedOffers appliedOffers) {
+        builder.setLength(0);
+
+        int itemCount = 0;
+        long totalPence = 0;
+        Product[] products = Product.values();
+        for (int i = 0; i < products.length; i++) {
+            int count = productCounts[i];
+            if (count > 0) {
+                long linePence = count * products[i].getPriceInPence();
+                builder.append(products[i].name()).append(" x").append(count).append(' ');
+                appendPounds(builder, linePence);
+                builder.append('\n');
+                itemCount += count;
+                totalPence += linePence;
+            }
+        }
+
+        for (int i = 0; i < appliedOffers.size(); i++) {
+            builder.append(appliedOffers.getName(i)).append(" x").append(appliedOffers.getTimesApplied(i)).append(" -");
+            appendPounds(builder, appliedOffers.getTotalSaving(i));
+            builder.append('\n');
+        }
+
+        appendSummary(itemCount, totalPence - appliedOffers.getTotalSavings());
+        return builder;
+    }
+
+    private void appendSummary(final int itemCount, final long totalPence) {
+        builder.append(itemCount).append(SUMMARY_ITEMS);
+        appendPounds(builder, totalPence);
+    }
+
+    /**
+     * Appends an amount in pence as pounds with a pound sign and two decimal places, e.g. 85 as £0.85 and, as the
+     * template renders them, -50 as £-0.50
+     *
+     * @param builder The builder to append to
+     * @param pence   The amount in pence
+     */
+    static void appendPounds(final StringBuilder builder, final long pence) {
+        builder.append(POUND);
+        // Split before taking the sign off, as Long.MIN_VALUE has no positive counterpart but its pounds do
+        long pounds = pence / 100;
+        long penceOnly = Math.abs(pence % 100);
+        if (pence < 0) {
+            builder.append('-');
+            pounds = -pounds;
+        }
+        builder.append(pounds).append('.');
+        if (penceOnly < 10) {
+            builder.append('0');
+        }
+        builder.append(penceOnly);
+    }
+}
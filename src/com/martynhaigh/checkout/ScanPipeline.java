@@ -0,0 +1,368 @@
+package com.martynhaigh.checkout;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prices a live lane's scan events as they arrive, without allocating once running, by passing them through a
+ * preallocated ring of slots in the style of a disruptor.
+ * <p>
+ * One thread, the scanner, publishes item names into the ring. Three stages then each run on their own thread, each
+ * following the one before it around the ring:
+ * <ol>
+ * <li>parse matches the name in the slot to a {@link Product} in the active {@link Catalogue}</li>
+ * <li>cart update adds the product to the lane's {@link Cart} and records the running count and total in the slot</li>
+ * <li>total refresh hands the latest count and total to a {@link TotalListener}, such as the customer display</li>
+ * </ol>
+ * Each slot is a row across primitive arrays, and stages only ever hand each other sequence numbers. A stage that
+ * falls behind takes everything published to it since it last looked as one batch, and the total is refreshed once
+ * per batch rather than once per scan, so bursts are absorbed rather than queued. When the ring is full the scanner
+ * either gets {@code false} back from {@link #tryPublish(CharSequence)} or waits in {@link #publish(CharSequence)},
+ * so a burst never grows anything without bound.
+ * <p>
+ * The time from each scan being published until a total including it is refreshed is recorded in a histogram.
+ */
+public class ScanPipeline implements AutoCloseable {
+
+    /**
+     * Receives the running total once per batch of scans, on the total refresh thread
+     */
+    public interface TotalListener {
+        /**
+         * @param sequence   The sequence number of the last scan included in the total
+         * @param itemCount  The number of items in the cart
+         * @param totalPence The cart total in pence, with offers applied
+         */
+        void onTotal(long sequence, int itemCount, long totalPence);
+    }
+
+    private static final int NO_PRODUCT = -1;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final Product[] PRODUCTS = Product.values();
+
+    private final int capacity;
+    private final int mask;
+    private final TotalListener listener;
+    private final Cart cart = new Cart();
+
+    // Slot s of each array belongs to the event with sequence number s & mask. Names are stored trimmed, in ASCII.
+    private final byte[] names;
+    private final int[] nameLengths;
+    private final long[] scanNanos;
+    private final int[] products;
+    private final int[] itemCounts;
+    private final long[] totals;
+    // Only used by the parse stage, to look up the name in a slot without creating a String
+    private final SlotNameView slotName = new SlotNameView();
+
+    // The sequence number of the last event published and the last one each stage has finished with
+    private final AtomicLong published = new AtomicLong(-1);
+    private final AtomicLong parsed = new AtomicLong(-1);
+    private final AtomicLong updated = new AtomicLong(-1);
+    private final AtomicLong refreshed = new AtomicLong(-1);
+
+    // Only used by the scanner: the next sequence number, and the last known refreshed sequence so a full check
+    // doesn't read the shared one on every publish
+    private long nextSequence;
+    private long cachedRefreshed = -1;
+
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final Thread[] stages;
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+
+    /**
+     * Allocates the ring and starts the stage threads
+     *
+     * @param capacity The number of slots in the ring, a power of two
+     * @param listener Told the running total after each batch
+     */
+    public ScanPipeline(final int capacity, final TotalListener listener) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("A pipeline needs a listener for its totals");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.listener = listener;
+        names = new byte[capacity * ProductNameParser.MAX_NAME_LENGTH];
+        nameLengths = new int[capacity];
+        scanNanos = new long[capacity];
+        products = new int[capacity];
+        itemCounts = new int[capacity];
+        totals = new long[capacity];
+
+        stages = new Thread[]{
+                stage("scan-parse", published, parsed, new Stage() {
+                    @Override
+                    void process(final int slot) {
+                        parse(slot);
+                    }
+                }),
+                stage("scan-cart-update", parsed, updated, new Stage() {
+                    @Override
+                    void process(final int slot) {
+                        updateCart(slot);
+                    }
+                }),
+                stage("scan-total-refresh", updated, refreshed, new Stage() {
+                    @Override
+                    void process(final int slot) {
+                        // Only the last event of a batch is refreshed, in endBatch
+                    }
+
+                    @Override
+                    void endBatch(final long first, final long last) {
+                        refresh(first, last);
+                    }
+                })
+        };
+        for (Thread stage : stages) {
+            stage.start();
+        }
+    }
+
+    /**
+     * Publishes a scan if there is room in the ring. Only one thread may publish.
+     *
+     * @param itemName The scanned name, matched as {@link Checkout#parseItemName(CharSequence)} does
+     * @return Whether the scan was published, false if the ring is full of scans not yet refreshed
+     */
+    public boolean tryPublish(final CharSequence itemName) {
+        checkRunning();
+        // The slot is free once the event a whole ring before it has been refreshed
+        if (nextSequence - cachedRefreshed > capacity) {
+            cachedRefreshed = refreshed.get();
+            if (nextSequence - cachedRefreshed > capacity) {
+                return false;
+            }
+        }
+
+        int slot = (int) nextSequence & mask;
+        // Trim while copying, so padded names fit the slot. Anything still longer than a product name can't match.
+        int start = 0;
+        int end = itemName.length();
+        while (start < end && itemName.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && itemName.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length <= ProductNameParser.MAX_NAME_LENGTH) {
+            int offset = slot * ProductNameParser.MAX_NAME_LENGTH;
+            for (int i = 0; i < length; i++) {
+                char c = itemName.charAt(start + i);
+                // Product names are ASCII, so a name with anything else in it can't match
+                if (c > 0x7F) {
+                    length = Integer.MAX_VALUE;
+                    break;
+                }
+                names[offset + i] = (byte) c;
+            }
+        }
+        nameLengths[slot] = length;
+        scanNanos[slot] = System.nanoTime();
+        published.lazySet(nextSequence++);
+        return true;
+    }
+
+    /**
+     * Publishes a scan, waiting for room in the ring if it is full. Only one thread may publish.
+     *
+     * @param itemName The scanned name, matched as {@link Checkout#parseItemName(CharSequence)} does
+     * @throws InterruptedException If interrupted while waiting for room
+     */
+    public void publish(final CharSequence itemName) throws InterruptedException {
+        for (int tries = 0; !tryPublish(itemName); tries++) {
+            idle(tries);
+        }
+    }
+
+    /**
+     * Waits until every scan published so far is included in a refreshed total. Only the publishing thread should
+     * call this.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void awaitRefreshed() throws InterruptedException {
+        long last = nextSequence - 1;
+        for (int tries = 0; refreshed.get() < last; tries++) {
+            checkRunning();
+            idle(tries);
+        }
+    }
+
+    /**
+     * @return The number of scans published
+     */
+    public long getPublishedCount() {
+        return published.get() + 1;
+    }
+
+    /**
+     * @return A copy of the time from each scan being published until a total including it was refreshed, in
+     * nanoseconds
+     */
+    public Histogram getLatencies() {
+        return latencies.copy();
+    }
+
+    /**
+     * Stops the stages, dropping any scans not yet refreshed. If interrupted while waiting for them, returns with the
+     * interrupt flag set and leaves the stages, which are daemon threads, to stop on their own.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            for (Thread stage : stages) {
+                stage.join();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkRunning() {
+        if (failure != null) {
+            throw new IllegalStateException("A stage of the scan pipeline failed", failure);
+        }
+        if (!running) {
+            throw new IllegalStateException("The scan pipeline is closed");
+        }
+    }
+
+    private void parse(final int slot) {
+        Product product;
+        if (nameLengths[slot] > ProductNameParser.MAX_NAME_LENGTH) {
+            PricingMetrics.invalidNameRejected();
+            product = null;
+        } else {
+            slotName.slot = slot;
+            product = Checkout.parseItemName(slotName);
+        }
+        products[slot] = product == null ? NO_PRODUCT : product.ordinal();
+    }
+
+    private void updateCart(final int slot) {
+        if (products[slot] != NO_PRODUCT) {
+            cart.add(PRODUCTS[products[slot]], 1);
+        }
+        itemCounts[slot] = cart.size();
+        totals[slot] = cart.getTotalCost();
+    }
+
+    private void refresh(final long first, final long last) {
+        int lastSlot = (int) last & mask;
+        listener.onTotal(last, itemCounts[lastSlot], totals[lastSlot]);
+        long now = System.nanoTime();
+        for (long sequence = first; sequence <= last; sequence++) {
+            latencies.recordValue(Math.min(HIGHEST_TRACKABLE_NANOS, now - scanNanos[(int) sequence & mask]));
+        }
+    }
+
+    /**
+     * The work one stage does on each event
+     */
+    private abstract static class Stage {
+        abstract void process(int slot);
+
+        /**
+         * Called after each batch has been processed, before it is passed on
+         */
+        void endBatch(final long first, final long last) {
+        }
+    }
+
+    private Thread stage(final String name, final AtomicLong upstream, final AtomicLong sequence, final Stage stage) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long next = sequence.get() + 1;
+                    int tries = 0;
+                    while (running) {
+                        // Everything the stage before has finished with is taken as one batch
+                        long available = upstream.get();
+                        if (available < next) {
+                            idle(tries++);
+                            continue;
+                        }
+                        tries = 0;
+                        for (long event = next; event <= available; event++) {
+                            stage.process((int) event & mask);
+                        }
+                        stage.endBatch(next, available);
+                        sequence.lazySet(available);
+                        next = available + 1;
+                    }
+                } catch (final InterruptedException e) {
+                    // The stage has stopped, so nothing more will be refreshed and waiting scanners must be told
+                    failure = e;
+                    Thread.currentThread().interrupt();
+                } catch (final RuntimeException | Error e) {
+                    failure = e;
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Backs off while waiting, spinning at first, then yielding, then parking, so a short wait stays fast and a long
+     * one doesn't hold a core
+     */
+    private static void idle(final int tries) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (tries < SPIN_TRIES) {
+            return;
+        }
+        if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * The name in a slot as ASCII characters, so it can be looked up without creating a String
+     */
+    private final class SlotNameView implements CharSequence {
+        int slot;
+
+        @Override
+        public int length() {
+            return nameLengths[slot];
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) (names[slot * ProductNameParser.MAX_NAME_LENGTH + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(names, slot * ProductNameParser.MAX_NAME_LENGTH, nameLengths[slot], StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.martynhaigh.checkout;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reprices a basket log across several JVMs on one machine, for logs too large for one JVM to price in good time.
+ * <p>
+ * The log is split into shards of whole baskets by byte range, more shards than workers so faster workers take more
+ * of them. Workers connect over the loopback interface and are handed one shard at a time; see {@link ShardWorker}
+ * for the protocol. Each shard's totals are merged as they arrive. A worker which disconnects, or doesn't answer
+ * within the shard timeout, or answers with a malformed result, is dropped and its shard goes back in the queue for
+ * another worker. Once every shard is priced, the merged basket count is checked against the log's header.
+ * <p>
+ * Local workers are told the {@link Catalogue} file to price with on their command line. Workers started any other
+ * way price with whatever catalogue they have active, the built in one unless they were given a file.
+ */
+public class ShardCoordinator implements AutoCloseable {
+
+    private static final int SHARDS_PER_WORKER = 8;
+    private static final long DEFAULT_SHARD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long POLL_MILLIS = 100;
+
+    private static final Offer[] OFFERS = Offer.values();
+
+    private final Path log;
+    private final Path catalogue;
+    private final long basketCount;
+    private final long[] boundaries;
+    private final long shardTimeoutMillis;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final BlockingQueue<Integer> pendingShards = new LinkedBlockingQueue<>();
+    private final List<Process> localWorkers = new ArrayList<>();
+
+    // Guarded by this
+    private final boolean[] completed;
+    private final DailyTotals totals = new DailyTotals();
+    private int remainingShards;
+    private int connectedWorkers;
+    private String failure;
+
+    /**
+     * Splits a log into shards and starts listening for workers on the loopback interface, with local workers pricing
+     * at the built in catalogue's prices
+     *
+     * @param log                The basket log to price
+     * @param shardCount         The number of shards to split it into, fewer if the log has fewer baskets
+     * @param shardTimeoutMillis How long a worker can take to price a shard before it is treated as failed
+     * @throws IOException If the log can't be split or the coordinator can't listen
+     */
+    public ShardCoordinator(final Path log, final int shardCount, final long shardTimeoutMillis) throws IOException {
+        this(log, null, shardCount, shardTimeoutMillis);
+    }
+
+    /**
+     * Splits a log into shards and starts listening for workers on the loopback interface
+     *
+     * @param log                The basket log to price
+     * @param catalogue          The catalogue file local workers price with, or null for the built in catalogue
+     * @param shardCount         The number of shards to split it into, fewer if the log has fewer baskets
+     * @param shardTimeoutMillis How long a worker can take to price a shard before it is treated as failed
+     * @throws IOException If the log can't be split, the catalogue can't be read or the coordinator can't listen
+     */
+    public ShardCoordinator(final Path log, final Path catalogue, final int shardCount, final long shardTimeoutMillis) throws IOException {
+        if (shardTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("The shard timeout must be positive");
+        }
+        this.log = log.toAbsolutePath();
+        this.catalogue = catalogue == null ? null : catalogue.toAbsolutePath();
+        if (catalogue != null) {
+            // Read once here, so a bad file fails the run straight away rather than every worker
+            Catalogue.load(catalogue);
+        }
+        this.shardTimeoutMillis = shardTimeoutMillis;
+        basketCount = BasketLogPricer.readBasketCount(log);
+        boundaries = BasketLogPricer.split(log, shardCount);
+        completed = new boolean[boundaries.length - 1];
+        remainingShards = completed.length;
+        for (int shard = 0; shard < completed.length; shard++) {
+            pendingShards.add(shard);
+        }
+
+        serverSocket = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::acceptWorkers, "shard-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ShardCoordinator <basket log> [workers] [catalogue file]");
+            return;
+        }
+        int workerCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path catalogue = args.length > 2 ? Paths.get(args[2]) : null;
+        DailyTotals totals = price(Paths.get(args[0]), catalogue, workerCount);
+        System.out.println(totals.getBasketCount() + "," + totals.getTotalPence());
+    }
+
+    /**
+     * Prices a log at the built in catalogue's prices with a number of worker JVMs started for the purpose
+     *
+     * @param log         The basket log to price
+     * @param workerCount The number of worker JVMs
+     * @return The overflow checked totals of every basket in the log
+     * @throws IOException If the log can't be priced
+     */
+    public static DailyTotals price(final Path log, final int workerCount) throws IOException, InterruptedException {
+        return price(log, null, workerCount);
+    }
+
+    /**
+     * Prices a log with a number of worker JVMs started for the purpose
+     *
+     * @param log         The basket log to price
+     * @param catalogue   The catalogue file to price with, or null for the built in catalogue
+     * @param workerCount The number of worker JVMs
+     * @return The overflow checked totals of every basket in the log
+     * @throws IOException If the log or catalogue can't be read
+     */
+    public static DailyTotals price(final Path log, final Path catalogue, final int workerCount) throws IOException, InterruptedException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(log, catalogue, workerCount * SHARDS_PER_WORKER, DEFAULT_SHARD_TIMEOUT_MILLIS)) {
+            coordinator.startLocalWorkers(workerCount);
+            return coordinator.awaitTotals();
+        }
+    }
+
+    /**
+     * @return The port workers connect to
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The number of shards the log was split into
+     */
+    public int getShardCount() {
+        return completed.length;
+    }
+
+    /**
+     * Starts worker JVMs with the same class path as this one and the coordinator's catalogue file, which are stopped
+     * when the coordinator is closed
+     *
+     * @param workerCount The number of workers to start
+     * @throws IOException If a worker can't be started
+     */
+    public void startLocalWorkers(final int workerCount) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int worker = 0; worker < workerCount; worker++) {
+            List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"), ShardWorker.class.getName(), Integer.toString(getPort())));
+            if (catalogue != null) {
+                command.add(catalogue.toString());
+            }
+            Process process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            synchronized (this) {
+                localWorkers.add(process);
+            }
+        }
+    }
+
+    /**
+     * Waits for every shard to be priced
+     *
+     * @return The overflow checked totals of every basket in the log
+     * @throws IOException If a shard can't be priced by any worker, every local worker has exited, or the shards
+     *                     don't add up to the number of baskets in the log's header
+     */
+    public synchronized DailyTotals awaitTotals() throws IOException, InterruptedException {
+        while (remainingShards > 0) {
+            if (failure != null) {
+                throw new IOException(failure);
+            }
+            if (!localWorkers.isEmpty() && connectedWorkers == 0 && localWorkers.stream().noneMatch(Process::isAlive)) {
+                throw new IOException("Every worker exited with " + remainingShards + " shards of " + log + " left to price");
+            }
+            wait(POLL_MILLIS);
+        }
+        if (totals.getBasketCount() != basketCount) {
+            throw new IOException("Basket log " + log + " should hold " + basketCount + " baskets but its shards held " + totals.getBasketCount());
+        }
+        return totals;
+    }
+
+    private void acceptWorkers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, shardTimeoutMillis));
+                connectionExecutor.execute(() -> serve(socket));
+            } catch (final IOException e) {
+                // Thrown when the server socket is closed, which ends the loop
+            }
+        }
+    }
+
+    /**
+     * Hands shards to one worker until every shard is priced or the worker fails
+     */
+    private void serve(final Socket socket) {
+        synchronized (this) {
+            connectedWorkers++;
+        }
+        Integer shard = null;
+        try (Socket worker = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(worker.getOutputStream(), StandardCharsets.UTF_8);
+            while (!isFinished()) {
+                shard = pendingShards.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (shard == null) {
+                    continue;
+                }
+                out.write("SHARD " + shard + " " + boundaries[shard] + " " + boundaries[shard + 1] + " " + log + "\n");
+                out.flush();
+                String response = in.readLine();
+                if (response == null) {
+                    break;
+                }
+                complete(shard, response);
+                shard = null;
+            }
+        } catch (final IOException | RuntimeException e) {
+            // The worker failed or timed out, its shard is handed to another worker below
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                connectedWorkers--;
+                if (shard != null && !completed[shard]) {
+                    pendingShards.add(shard);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized boolean isFinished() {
+        return remainingShards == 0 || failure != null;
+    }
+
+    /**
+     * Merges a worker's response to a shard request
+     *
+     * @throws IllegalArgumentException If the response is malformed or for another shard, so the worker is dropped
+     */
+    private synchronized void complete(final int shard, final String response) {
+        String[] tokens = response.split(" ");
+        if (!"RESULT".equals(tokens[0])) {
+            // Pricing failed rather than the worker, so another worker would fail the same way
+            failure = "Shard " + shard + " of " + log + " failed: " + response;
+        } else if (tokens.length != 4 + OFFERS.length || !Integer.toString(shard).equals(tokens[1])) {
+            throw new IllegalArgumentException("Unexpected result for shard " + shard + ": " + response);
+        } else if (!completed[shard]) {
+            long[] offerSavings = new long[OFFERS.length];
+            for (int offer = 0; offer < offerSavings.length; offer++) {
+                offerSavings[offer] = Long.parseLong(tokens[4 + offer]);
+            }
+            totals.merge(new DailyTotals(Long.parseLong(tokens[2]), Long.parseLong(tokens[3]), offerSavings));
+            completed[shard] = true;
+            remainingShards--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops listening, disconnects workers and stops any local workers
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+        synchronized (this) {
+            for (Process process : localWorkers) {
+                process.destroy();
+            }
+        }
+    }
+}
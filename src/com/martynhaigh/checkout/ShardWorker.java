@@ -0,0 +1,84 @@
+package com.martynhaigh.checkout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Prices shards of a basket log for a {@link ShardCoordinator}, normally as its own JVM started by the coordinator.
+ * <p>
+ * The worker connects to the coordinator on the loopback interface, then answers each shard request it is sent until
+ * the coordinator closes the connection:
+ * <pre>
+ * SHARD &lt;shard&gt; &lt;start&gt; &lt;end&gt; &lt;log file&gt;
+ * -&gt; RESULT &lt;shard&gt; &lt;basket count&gt; &lt;total in pence&gt; &lt;savings from each offer, in Offer order&gt;
+ * -&gt; FAILED &lt;shard&gt; &lt;reason&gt;
+ * </pre>
+ * Shards are priced with the {@link Catalogue} file given on the command line, or the built in catalogue without one,
+ * so every worker a coordinator starts prices with the same catalogue as the others.
+ */
+public class ShardWorker {
+
+    private ShardWorker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ShardWorker <coordinator port> [catalogue file]");
+            return;
+        }
+        if (args.length > 1) {
+            Catalogue.setActive(Catalogue.load(Paths.get(args[1])));
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            serve(socket);
+        }
+    }
+
+    /**
+     * Answers shard requests from a coordinator until it closes the connection
+     *
+     * @param socket The connection to the coordinator
+     * @throws IOException If the connection fails
+     */
+    static void serve(final Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        BasketLogPricer pricer = new BasketLogPricer();
+        String request;
+        while ((request = in.readLine()) != null) {
+            out.write(handle(pricer, request));
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * @return The response to a shard request, without a line ending
+     */
+    static String handle(final BasketLogPricer pricer, final String request) {
+        // The path goes last so it can contain spaces
+        String[] tokens = request.split(" ", 5);
+        if (tokens.length != 5 || !"SHARD".equals(tokens[0])) {
+            return "FAILED ? unknown request " + request;
+        }
+        try {
+            DailyTotals totals = pricer.price(Paths.get(tokens[4]), Long.parseLong(tokens[2]), Long.parseLong(tokens[3]));
+            StringBuilder response = new StringBuilder("RESULT ").append(tokens[1])
+                    .append(' ').append(totals.getBasketCount())
+                    .append(' ').append(totals.getTotalPence());
+            for (Offer offer : Offer.values()) {
+                response.append(' ').append(totals.getOfferSavings(offer));
+            }
+            return response.toString();
+        } catch (final IOException | RuntimeException e) {
+            return "FAILED " + tokens[1] + " " + e;
+        }
+    }
+}
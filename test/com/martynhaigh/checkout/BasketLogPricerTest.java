@@ -0,0 +1,173 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BasketLogPricerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Ensure that a converted log prices the same as the text it came from
+     */
+    @Test
+    public void CheckLogPricesLikeText() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader("Apple, Apple, Orange\norange,ORANGE, orange ,pear\n\nApple"), file);
+
+        DailyTotals totals = new BasketLogPricer().price(file);
+        assertThat(totals.getBasketCount(), is(equalTo(4L)));
+        assertThat(totals.getTotalPence(), is(equalTo(85L + 50L + 60L)));
+    }
+
+    /**
+     * Ensure that both encodings are counted, including ordinal baskets longer than a long
+     */
+    @Test
+    public void CheckBothEncodings() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (BasketLogWriter writer = new BasketLogWriter(file)) {
+            for (int i = 0; i < 21; i++) {
+                writer.addItem(i % 2 == 0 ? Product.APPLE : Product.ORANGE);
+            }
+            writer.endBasket();
+            for (int i = 0; i < 100000; i++) {
+                writer.addItem(Product.ORANGE);
+            }
+            writer.endBasket();
+        }
+
+        DailyTotals totals = new BasketLogPricer(new PricingCache(4)).price(file);
+        assertThat(totals.getBasketCount(), is(equalTo(2L)));
+        // 11 apples and 10 oranges, then 100000 oranges
+        assertThat(totals.getTotalPence(), is(equalTo(6 * 60L + 7 * 25L + 1666675L)));
+    }
+
+    /**
+     * Ensure that a log cut short is rejected rather than priced in part
+     */
+    @Test(expected = IOException.class)
+    public void CheckTruncatedLog() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader("apple,orange,apple\n"), file);
+        byte[] log = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(log, log.length - 1));
+
+        new BasketLogPricer().price(file);
+    }
+
+    /**
+     * Ensure that pricing through a cache records the same savings from each offer as pricing every basket
+     */
+    @Test
+    public void CheckCachedOfferSavings() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader("Apple, Apple, Orange\norange,ORANGE, orange\nApple, Apple, Orange"), file);
+
+        DailyTotals priced = new BasketLogPricer().price(file);
+        DailyTotals cached = new BasketLogPricer(new PricingCache(4)).price(file);
+        assertThat(cached.getTotalPence(), is(equalTo(priced.getTotalPence())));
+        for (Offer offer : Offer.values()) {
+            assertThat(cached.getOfferSavings(offer), is(equalTo(priced.getOfferSavings(offer))));
+        }
+        assertThat(cached.getOfferSavings(Offer.BOGOF_APPLE), is(equalTo(120L)));
+        assertThat(cached.getOfferSavings(Offer.THREE_FOR_TWO_ORANGES), is(equalTo(25L)));
+    }
+
+    /**
+     * Ensure that a run of a product which doesn't exist is rejected as corrupt
+     */
+    @Test(expected = IOException.class)
+    public void CheckUnknownProductInRun() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader(repeat("orange", 10)), file);
+        byte[] log = Files.readAllBytes(file);
+        // The ordinal of the only run, just after the basket length
+        log[BasketLogWriter.HEADER_SIZE + 1] = 9;
+        Files.write(file, log);
+
+        new BasketLogPricer().price(file);
+    }
+
+    /**
+     * Ensure that a run whose quantity runs into the next basket is rejected as corrupt
+     */
+    @Test(expected = IOException.class)
+    public void CheckRunOverrunningBasket() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader(repeat("orange", 10) + "\n" + repeat("apple", 10)), file);
+        byte[] log = Files.readAllBytes(file);
+        // Mark the quantity of the first run as continuing into the second basket's length
+        log[BasketLogWriter.HEADER_SIZE + 2] |= 0x80;
+        Files.write(file, log);
+
+        new BasketLogPricer().price(file);
+    }
+
+    /**
+     * Ensure that a data driven rule sharing its name with a built in offer isn't counted as that offer
+     */
+    @Test
+    public void CheckRuleNamedLikeOfferIsNotCountedAsIt() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader("Apple, Apple, Orange"), file);
+
+        OfferRules rules = OfferRules.load(new StringReader("BOGOF_APPLE = PERCENT_OFF ORANGE 20"));
+        DailyTotals totals = new BasketLogPricer(new PricingCache(4, rules)).price(file);
+        assertThat(totals.getTotalPence(), is(equalTo(120L + 20L)));
+        assertThat(totals.getOfferSavings(Offer.BOGOF_APPLE), is(equalTo(0L)));
+    }
+
+    /**
+     * Ensure that a varint running on past the five bytes an int needs is rejected rather than read
+     */
+    @Test(expected = IOException.class)
+    public void CheckOverlongVarint() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader(String.join("\n", repeat("orange", 10), repeat("orange", 10), repeat("orange", 10), repeat("orange", 10))), file);
+        byte[] log = Files.readAllBytes(file);
+        // Continue the quantity of the first run through the rest of the log, well past five bytes
+        for (int i = BasketLogWriter.HEADER_SIZE + 2; i < log.length; i++) {
+            log[i] |= 0x80;
+        }
+        Files.write(file, log);
+
+        new BasketLogPricer().price(file);
+    }
+
+    /**
+     * Ensure that varints read back as written, up to the longest an int needs
+     */
+    @Test
+    public void CheckVarintRoundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(3 * BasketLogWriter.MAX_VARINT_SIZE);
+        BasketLogWriter.putVarint(buffer, 0);
+        BasketLogWriter.putVarint(buffer, 200);
+        BasketLogWriter.putVarint(buffer, -1);
+        buffer.flip();
+        assertThat(BasketLogPricer.getVarint(buffer), is(equalTo(0)));
+        assertThat(BasketLogPricer.getVarint(buffer), is(equalTo(200)));
+        assertThat(BasketLogPricer.getVarint(buffer), is(equalTo(-1)));
+    }
+
+    private static String repeat(final String item, final int times) {
+        StringBuilder basket = new StringBuilder(item);
+        for (int i = 1; i < times; i++) {
+            basket.append(',').append(item);
+        }
+        return basket.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BasketLogWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Ensure that mixed baskets are written an ordinal per item and that long runs are run length encoded
+     */
+    @Test
+    public void CheckEncodings() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        StringBuilder oranges = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            oranges.append("orange,");
+        }
+        long basketCount = BasketLogWriter.convert(new StringReader("Apple, pear ,Orange, apple\n" + oranges + "\n"), file);
+        assertThat(basketCount, is(equalTo(2L)));
+
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertThat(log.getInt(), is(equalTo(BasketLogWriter.MAGIC)));
+        assertThat(log.getInt(), is(equalTo(BasketLogWriter.FORMAT_VERSION)));
+        assertThat(log.getInt(), is(equalTo(Product.values().length)));
+        assertThat(log.getLong(), is(equalTo(2L)));
+
+        // Three ordinals
+        assertThat(log.get() & 0xFF, is(equalTo(3 << 1 | BasketLogWriter.ORDINALS)));
+        assertThat(log.get() & 0xFF, is(equalTo(Product.APPLE.ordinal())));
+        assertThat(log.get() & 0xFF, is(equalTo(Product.ORANGE.ordinal())));
+        assertThat(log.get() & 0xFF, is(equalTo(Product.APPLE.ordinal())));
+
+        // One run of 200 oranges, which needs a two byte varint
+        assertThat(log.get() & 0xFF, is(equalTo(3 << 1 | BasketLogWriter.RUNS)));
+        assertThat(log.get() & 0xFF, is(equalTo(Product.ORANGE.ordinal())));
+        assertThat(log.get() & 0xFF, is(equalTo(200 & 0x7F | 0x80)));
+        assertThat(log.get() & 0xFF, is(equalTo(200 >>> 7)));
+        assertThat(log.hasRemaining(), is(equalTo(false)));
+    }
+
+    /**
+     * Ensure that item names are matched against the active catalogue, so products missing from it are dropped
+     */
+    @Test
+    public void CheckActiveCatalogueIsUsed() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 50).build());
+            BasketLogWriter.convert(new StringReader("apple,orange"), file);
+        } finally {
+            Catalogue.setActive(original);
+        }
+
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file));
+        log.position(BasketLogWriter.HEADER_SIZE);
+        assertThat(log.get() & 0xFF, is(equalTo(1 << 1 | BasketLogWriter.ORDINALS)));
+        assertThat(log.get() & 0xFF, is(equalTo(Product.APPLE.ordinal())));
+        assertThat(log.hasRemaining(), is(equalTo(false)));
+    }
+
+    /**
+     * Ensure that varints are sized to fit their value
+     */
+    @Test
+    public void CheckVarintSizes() {
+        assertThat(BasketLogWriter.varintSize(0), is(equalTo(1)));
+        assertThat(BasketLogWriter.varintSize(127), is(equalTo(1)));
+        assertThat(BasketLogWriter.varintSize(128), is(equalTo(2)));
+        assertThat(BasketLogWriter.varintSize(Integer.MAX_VALUE), is(equalTo(5)));
+        assertThat(BasketLogWriter.varintSize(-1), is(equalTo(BasketLogWriter.MAX_VARINT_SIZE)));
+    }
+}
@@ -0,0 +1,62 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BasketPricerTest {
+
+    /**
+     * Ensure that each basket is priced independently with offers applied
+     */
+    @Test
+    public void CheckBasketTotalsAndOfferSavings() {
+        List<List<Product>> baskets = Arrays.asList(
+                Arrays.asList(Product.APPLE, Product.APPLE, Product.ORANGE),
+                Arrays.asList(Product.ORANGE, null, Product.ORANGE, Product.ORANGE),
+                new ArrayList<>());
+
+        try (BasketPricer pricer = new BasketPricer(2)) {
+            BasketPricer.PricedBaskets pricedBaskets = pricer.price(baskets);
+
+            assertThat(pricedBaskets.getBasketCount(), is(equalTo(3)));
+            assertThat(pricedBaskets.getBasketTotal(0), is(equalTo(85L)));
+            assertThat(pricedBaskets.getBasketTotal(1), is(equalTo(50L)));
+            assertThat(pricedBaskets.getBasketTotal(2), is(equalTo(0L)));
+            assertThat(pricedBaskets.getOfferSavings(Offer.BOGOF_APPLE), is(equalTo(60L)));
+            assertThat(pricedBaskets.getOfferSavings(Offer.THREE_FOR_TWO_ORANGES), is(equalTo(25L)));
+        }
+    }
+
+    /**
+     * Ensure that parallel pricing of many baskets matches pricing each basket through a checkout
+     */
+    @Test
+    public void CheckParallelPricingMatchesCheckout() {
+        Random random = new Random(7);
+        List<List<Product>> baskets = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            List<Product> basket = new ArrayList<>();
+            for (int item = random.nextInt(10); item > 0; item--) {
+                basket.add(Product.values()[random.nextInt(Product.values().length)]);
+            }
+            baskets.add(basket);
+        }
+
+        try (BasketPricer pricer = new BasketPricer(4)) {
+            BasketPricer.PricedBaskets pricedBaskets = pricer.price(baskets);
+            for (int i = 0; i < baskets.size(); i++) {
+                Checkout checkout = new Checkout();
+                checkout.addItemsToCart(baskets.get(i));
+                assertThat(pricedBaskets.getBasketTotal(i), is(equalTo(checkout.getCartTotalCost())));
+            }
+        }
+    }
+}
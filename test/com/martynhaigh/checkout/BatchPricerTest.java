@@ -0,0 +1,82 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BatchPricerTest {
+
+    /**
+     * Ensure that each basket is priced with offers applied and invalid names skipped
+     */
+    @Test
+    public void CheckBasketsArePriced() throws IOException {
+        assertThat(price("Apple, Apple, Orange\norange,ORANGE, orange ,pear\n\nApple"), is(equalTo("3,85\n3,50\n0,0\n1,60\n")));
+    }
+
+    /**
+     * Ensure that windows line endings and long invalid names are handled
+     */
+    @Test
+    public void CheckLineEndingsAndLongNames() throws IOException {
+        assertThat(price("apple,apple\r\n   apple   ,pineapples and oranges\r\n"), is(equalTo("2,60\n1,60\n")));
+    }
+
+    /**
+     * Ensure that baskets spanning many read buffers are priced correctly
+     */
+    @Test
+    public void CheckLargeBasket() throws IOException {
+        StringBuilder basket = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            basket.append(" Orange ,");
+        }
+        assertThat(price(basket.toString()), is(equalTo("100000,1666675\n")));
+    }
+
+    /**
+     * Ensure that items are matched against the active catalogue, as the checkout does
+     */
+    @Test
+    public void CheckActiveCatalogueIsUsed() throws IOException {
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 50).build());
+            assertThat(price("apple,orange\n"), is(equalTo("1,50\n")));
+        } finally {
+            Catalogue.setActive(original);
+        }
+    }
+
+    /**
+     * Ensure that numbers at either end of the long range are written in full
+     */
+    @Test
+    public void CheckNumberLimits() {
+        assertThat(writeNumber(Long.MIN_VALUE), is(equalTo(Long.toString(Long.MIN_VALUE))));
+        assertThat(writeNumber(Long.MAX_VALUE), is(equalTo(Long.toString(Long.MAX_VALUE))));
+        assertThat(writeNumber(-9), is(equalTo("-9")));
+        assertThat(writeNumber(0), is(equalTo("0")));
+    }
+
+    private String writeNumber(final long value) {
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        BatchPricer.writeNumber(buffer, value);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+
+    private String price(final String baskets) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BatchPricer().price(Channels.newChannel(new ByteArrayInputStream(baskets.getBytes(StandardCharsets.US_ASCII))), Channels.newChannel(out));
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,197 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CartJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Ensure that every kind of event is replayed when the journal is reopened
+     */
+    @Test
+    public void CheckEventsAreReplayed() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            journal.add(Product.ORANGE, 4);
+            journal.voidCart();
+            journal.add(Product.APPLE, 3);
+            journal.add(Product.ORANGE, 3);
+            journal.remove(Product.APPLE, 1);
+            journal.add(null, 5);
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            assertThat(journal.getLastSequence(), is(equalTo(5L)));
+            assertThat(journal.getCart().getQuantity(Product.APPLE), is(equalTo(2)));
+            assertThat(journal.getCart().getQuantity(Product.ORANGE), is(equalTo(3)));
+            assertThat(journal.getCart().getTotalCost(), is(equalTo(110L)));
+        }
+    }
+
+    /**
+     * Ensure that a change the cart rejects isn't journalled
+     */
+    @Test
+    public void CheckRejectedChangesAreNotJournalled() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            journal.add(Product.APPLE, 1);
+            try {
+                journal.remove(Product.APPLE, 2);
+            } catch (final IllegalArgumentException e) {
+                // Expected, the cart only holds one apple
+            }
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            assertThat(journal.getLastSequence(), is(equalTo(1L)));
+            assertThat(journal.getCart().size(), is(equalTo(1)));
+        }
+    }
+
+    /**
+     * Ensure that a snapshot restarts the journal, so recovery only replays the events since
+     */
+    @Test
+    public void CheckRecoveryFromSnapshot() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, 10)) {
+            for (int i = 0; i < 25; i++) {
+                journal.add(i % 2 == 0 ? Product.APPLE : Product.ORANGE, 1);
+            }
+        }
+        assertThat(Files.size(directory.resolve(CartJournal.JOURNAL_FILE)), is(equalTo(5L * CartJournal.RECORD_SIZE)));
+
+        try (CartJournal journal = CartJournal.open(directory, 10)) {
+            assertThat(journal.getLastSequence(), is(equalTo(25L)));
+            assertThat(journal.getCart().getQuantity(Product.APPLE), is(equalTo(13)));
+            assertThat(journal.getCart().getQuantity(Product.ORANGE), is(equalTo(12)));
+            // 6 apples free and 4 oranges free
+            assertThat(journal.getCart().getTotalCost(), is(equalTo(7 * 60L + 8 * 25L)));
+        }
+    }
+
+    /**
+     * Ensure that a cart recovered from a snapshot taken at other prices is priced at the active catalogue's prices
+     */
+    @Test
+    public void CheckRecoveryAfterReprice() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            journal.add(Product.APPLE, 3);
+            journal.snapshot();
+        }
+
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 100).add("Orange", 25).build());
+            try (CartJournal journal = CartJournal.open(directory, 1000)) {
+                journal.add(Product.APPLE, 1);
+                // Two apples free
+                assertThat(journal.getCart().getTotalCost(), is(equalTo(200L)));
+            }
+        } finally {
+            Catalogue.setActive(original);
+        }
+    }
+
+    /**
+     * Ensure that events left in the journal by a crash just after a snapshot aren't replayed twice
+     */
+    @Test
+    public void CheckStaleEventsAreSkipped() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        Path journalFile = directory.resolve(CartJournal.JOURNAL_FILE);
+        byte[] staleJournal;
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            journal.add(Product.APPLE, 2);
+            journal.add(Product.ORANGE, 1);
+            journal.commit();
+            staleJournal = Files.readAllBytes(journalFile);
+            journal.snapshot();
+        }
+        Files.write(journalFile, staleJournal);
+
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            assertThat(journal.getCart().size(), is(equalTo(3)));
+            journal.add(Product.APPLE, 1);
+        }
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            assertThat(journal.getLastSequence(), is(equalTo(3L)));
+            assertThat(journal.getCart().size(), is(equalTo(4)));
+        }
+    }
+
+    /**
+     * Ensure that a record left half written by a crash is dropped and later events follow the last complete one
+     */
+    @Test
+    public void CheckTornRecordIsDropped() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        Path journalFile = directory.resolve(CartJournal.JOURNAL_FILE);
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            journal.add(Product.APPLE, 1);
+        }
+        Files.write(journalFile, new byte[]{0, 0, 0, 0, 0, 0, 0, 2, 0, 0}, StandardOpenOption.APPEND);
+
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            assertThat(Files.size(journalFile), is(equalTo((long) CartJournal.RECORD_SIZE)));
+            journal.add(Product.ORANGE, 1);
+        }
+        try (CartJournal journal = CartJournal.open(directory, 1000)) {
+            assertThat(journal.getLastSequence(), is(equalTo(2L)));
+            assertThat(journal.getCart().size(), is(equalTo(2)));
+        }
+    }
+
+    /**
+     * Ensure that threads committing together all have their events made durable, across many full batches
+     */
+    @Test
+    public void CheckGroupCommit() throws IOException, InterruptedException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (CartJournal journal = CartJournal.open(directory, 1000000)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 5000; i++) {
+                            long sequence = journal.add(Product.APPLE, 1);
+                            if (i % 10 == 0) {
+                                journal.commit(sequence);
+                            }
+                        }
+                    } catch (final IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, 1000000)) {
+            assertThat(journal.getLastSequence(), is(equalTo(20000L)));
+            assertThat(journal.getCart().getQuantity(Product.APPLE), is(equalTo(20000)));
+        }
+    }
+}
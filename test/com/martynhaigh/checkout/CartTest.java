@@ -0,0 +1,194 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CartTest {
+
+    /**
+     * Ensure that quantities are recorded per product
+     */
+    @Test
+    public void CheckQuantitiesAreCounted() {
+        Cart cart = new Cart();
+        cart.add(Product.APPLE, 3);
+        cart.add(Product.ORANGE, 2);
+        cart.add(Product.APPLE, 1);
+        cart.add(null, 5);
+
+        assertThat(cart.getQuantity(Product.APPLE), is(equalTo(4)));
+        assertThat(cart.getQuantity(Product.ORANGE), is(equalTo(2)));
+        assertThat(cart.size(), is(equalTo(6)));
+    }
+
+    /**
+     * Ensure that a large bulk add is priced with offers applied
+     */
+    @Test
+    public void CheckBulkTotalCost() {
+        Cart cart = new Cart();
+        cart.add(Product.APPLE, 1000);
+        cart.add(Product.ORANGE, 3000);
+
+        // 500 apples at 60p and 2000 oranges at 25p
+        assertThat(cart.getTotalCost(), is(equalTo(80000L)));
+    }
+
+    /**
+     * Ensure that the list view expands the counts into units
+     */
+    @Test
+    public void CheckListViewExpandsUnits() {
+        Cart cart = new Cart();
+        cart.add(Product.ORANGE, 2);
+        cart.add(Product.APPLE, 1);
+        List<Product> items = cart.asList();
+
+        assertThat(items.size(), is(equalTo(3)));
+        assertThat(items.get(0), is(equalTo(Product.APPLE)));
+        assertThat(items.get(1), is(equalTo(Product.ORANGE)));
+        assertThat(items.get(2), is(equalTo(Product.ORANGE)));
+    }
+
+    /**
+     * Ensure that negative quantities are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckNegativeQuantityIsRejected() {
+        new Cart().add(Product.APPLE, -1);
+    }
+
+    /**
+     * Ensure that the running total always matches a full recompute of the cart
+     */
+    @Test
+    public void CheckRunningTotalMatchesFullRecompute() {
+        Cart cart = new Cart();
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            Product product = Product.values()[random.nextInt(Product.values().length)];
+            if (random.nextInt(3) == 0 && cart.getQuantity(product) > 0) {
+                cart.remove(product, 1);
+            } else {
+                cart.add(product, 1 + random.nextInt(4));
+            }
+            int[] productCounts = cart.getProductCounts();
+            long expected = Product.getPriceInPence(productCounts) - Offer.applyAllOffers(productCounts).getTotalSavings();
+            assertThat(cart.getTotalCost(), is(equalTo(expected)));
+        }
+    }
+
+    /**
+     * Ensure that removing more units than the cart contains is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckRemovingMissingUnitsIsRejected() {
+        Cart cart = new Cart();
+        cart.add(Product.ORANGE, 1);
+        cart.remove(Product.ORANGE, 2);
+    }
+
+    /**
+     * Ensure that an add which would overflow a count is rejected, leaving the cart as it was
+     */
+    @Test
+    public void CheckOverflowingAddIsRejected() {
+        Cart cart = new Cart();
+        cart.add(Product.APPLE, Integer.MAX_VALUE - 1);
+        cart.add(Product.ORANGE, 1);
+        int rejected = 0;
+        try {
+            cart.add(Product.APPLE, 2);
+        } catch (final IllegalArgumentException e) {
+            // Expected, the apple count would overflow
+            rejected++;
+        }
+        try {
+            cart.add(Product.ORANGE, 1);
+        } catch (final IllegalArgumentException e) {
+            // Expected, the orange count fits but the size would overflow
+            rejected++;
+        }
+        assertThat(rejected, is(equalTo(2)));
+        assertThat(cart.getQuantity(Product.APPLE), is(equalTo(Integer.MAX_VALUE - 1)));
+        assertThat(cart.getQuantity(Product.ORANGE), is(equalTo(1)));
+        assertThat(cart.size(), is(equalTo(Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Ensure that clearing the cart resets its quantities and totals
+     */
+    @Test
+    public void CheckClear() {
+        Cart cart = new Cart();
+        cart.add(Product.APPLE, 3);
+        cart.clear();
+        cart.add(Product.ORANGE, 1);
+
+        assertThat(cart.size(), is(equalTo(1)));
+        assertThat(cart.getTotalCost(), is(equalTo(25L)));
+        assertThat(cart.getTotalSavings(), is(equalTo(0L)));
+    }
+
+    /**
+     * Ensure that a restored cart carries on pricing from its saved state
+     */
+    @Test
+    public void CheckRestoredCart() {
+        Cart cart = new Cart(new int[]{3, 2});
+        cart.add(Product.ORANGE, 1);
+
+        assertThat(cart.size(), is(equalTo(6)));
+        // The third orange is free
+        assertThat(cart.getTotalCost(), is(equalTo(170L)));
+    }
+
+    /**
+     * Ensure that a restored cart is priced at the active catalogue's prices, not those it was saved with
+     */
+    @Test
+    public void CheckRestoredCartIsRepriced() {
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 100).add("Orange", 25).build());
+            Cart cart = new Cart(new int[]{3, 2});
+            cart.add(Product.ORANGE, 1);
+
+            // One apple free and one orange free
+            assertThat(cart.getTotalCost(), is(equalTo(250L)));
+        } finally {
+            Catalogue.setActive(original);
+        }
+    }
+
+    /**
+     * Ensure that items already in the cart are repriced when the active catalogue changes, so removing them takes off
+     * what they now cost and the offers follow the new prices
+     */
+    @Test
+    public void CheckRepriceThenRemove() {
+        Catalogue original = Catalogue.getActive();
+        try {
+            Cart cart = new Cart();
+            cart.add(Product.APPLE, 3);
+            assertThat(cart.getTotalCost(), is(equalTo(120L)));
+
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 100).add("Orange", 25).build());
+            assertThat(cart.getTotalCost(), is(equalTo(200L)));
+            cart.remove(Product.APPLE, 1);
+            assertThat(cart.getTotalCost(), is(equalTo(100L)));
+            assertThat(cart.getTotalSavings(), is(equalTo(100L)));
+            cart.remove(Product.APPLE, 2);
+            assertThat(cart.getTotalCost(), is(equalTo(0L)));
+            assertThat(cart.getTotalSavings(), is(equalTo(0L)));
+        } finally {
+            Catalogue.setActive(original);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CatalogueTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Ensure that the built in catalogue contains every product at its built in price
+     */
+    @Test
+    public void CheckBuiltInCatalogue() {
+        Catalogue catalogue = Catalogue.builtIn();
+        assertThat(catalogue.size(), is(equalTo(Product.values().length)));
+        assertThat(catalogue.findProduct(" aPpLe "), is(equalTo(Product.APPLE)));
+        assertThat(catalogue.getPriceInPence(Product.ORANGE), is(equalTo(25L)));
+        assertThat(catalogue.findSku("apples"), is(equalTo(-1)));
+    }
+
+    /**
+     * Ensure that a catalogue survives being written and memory mapped
+     */
+    @Test
+    public void CheckWriteAndLoad() throws IOException {
+        Catalogue catalogue = new Catalogue.Builder()
+                .add("Pear", 40)
+                .add("apple", 55)
+                .add("Banana", 20)
+                .build();
+        Path file = temporaryFolder.newFile().toPath();
+        catalogue.write(file);
+        Catalogue loaded = Catalogue.load(file);
+
+        assertThat(loaded.size(), is(equalTo(3)));
+        assertThat(loaded.getName(loaded.findSku("banana")), is(equalTo("BANANA")));
+        assertThat(loaded.getPriceInPence(loaded.findSku(" PEAR")), is(equalTo(40L)));
+        assertThat(loaded.findProduct("Apple"), is(equalTo(Product.APPLE)));
+        assertThat(loaded.findProduct("Pear"), is(nullValue()));
+        assertThat(loaded.getPriceInPence(Product.APPLE), is(equalTo(55L)));
+
+        // Products missing from the catalogue keep their built in price
+        assertThat(loaded.getPriceInPence(Product.ORANGE), is(equalTo(25L)));
+        assertThat(loaded.findProduct("Orange"), is(nullValue()));
+    }
+
+    /**
+     * Ensure that product prices and names resolve through the active catalogue
+     */
+    @Test
+    public void CheckActiveCatalogueReprices() {
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 50).add("Orange", 30).add("Kiwi", 10).build());
+            assertThat(Product.APPLE.getPriceInPence(), is(equalTo(50L)));
+
+            Checkout checkout = new Checkout();
+            checkout.addItemsToCart(checkout.parseShoppingList(new String[]{"apple", "orange", "kiwi"}));
+            assertThat(checkout.getCartTotalCost(), is(equalTo(80L)));
+        } finally {
+            Catalogue.setActive(original);
+        }
+    }
+
+    /**
+     * Ensure that duplicate names are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckDuplicateNamesAreRejected() {
+        new Catalogue.Builder().add("Apple", 50).add(" APPLE", 60).build();
+    }
+
+    /**
+     * Ensure that a catalogue file whose header doesn't match its length is rejected rather than mapped
+     */
+    @Test(expected = IOException.class)
+    public void CheckCorruptHeaderIsRejected() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        new Catalogue.Builder().add("Pear", 40).add("Apple", 55).build().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        // Claim a million SKUs
+        ByteBuffer.wrap(bytes).putInt(2 * Integer.BYTES, 1000000);
+        Files.write(file, bytes);
+
+        Catalogue.load(file);
+    }
+
+    /**
+     * Ensure that a name offset pointing outside the names is rejected
+     */
+    @Test(expected = IOException.class)
+    public void CheckCorruptNameOffsetIsRejected() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        new Catalogue.Builder().add("Pear", 40).add("Apple", 55).build().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        // The offset of the second name, just after the header and the first offset
+        ByteBuffer.wrap(bytes).putInt(5 * Integer.BYTES, 1000);
+        Files.write(file, bytes);
+
+        Catalogue.load(file);
+    }
+}
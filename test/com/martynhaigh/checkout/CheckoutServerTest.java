@@ -0,0 +1,173 @@
+package com.martynhaigh.checkout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CheckoutServerTest {
+
+    private CheckoutServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new CheckoutServer(0, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Ensure that a session is priced with offers as items are added and removed over a connection
+     */
+    @Test
+    public void CheckSessionOverConnection() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+
+            // Pipelined, so the responses must come back in order
+            out.write("ADD a apple 2\nADD b orange\nadd a Orange\nREMOVE a apple\nTOTAL b\nCLOSE a\nTOTAL a\n");
+            out.flush();
+
+            assertThat(in.readLine(), is(equalTo("OK 2 60")));
+            assertThat(in.readLine(), is(equalTo("OK 1 25")));
+            assertThat(in.readLine(), is(equalTo("OK 3 85")));
+            assertThat(in.readLine(), is(equalTo("OK 2 85")));
+            assertThat(in.readLine(), is(equalTo("OK 1 25")));
+            assertThat(in.readLine(), is(equalTo("OK 2 85")));
+            // A closed session starts again empty
+            assertThat(in.readLine(), is(equalTo("OK 0 0")));
+        }
+    }
+
+    /**
+     * Ensure that bad requests get an error without affecting the session
+     */
+    @Test
+    public void CheckErrors() {
+        assertThat(server.handle("ADD a pear"), startsWith("ERROR"));
+        assertThat(server.handle("ADD a apple lots"), startsWith("ERROR"));
+        assertThat(server.handle("REMOVE a apple"), startsWith("ERROR"));
+        assertThat(server.handle("BUY a apple"), startsWith("ERROR"));
+        assertThat(server.handle("TOTAL"), startsWith("ERROR"));
+        assertThat(server.handle("CLOSE b"), startsWith("ERROR"));
+        assertThat(server.handle("ADD a apple -1"), startsWith("ERROR"));
+        assertThat(server.handle("TOTAL a extra"), startsWith("ERROR"));
+        assertThat(server.handle("TOTAL a"), is(equalTo("OK 0 0")));
+        // None of the requests above may start a session
+        assertThat(server.getSessionCount(), is(equalTo(0)));
+
+        assertThat(server.handle("ADD a apple"), is(equalTo("OK 1 60")));
+        assertThat(server.handle("REMOVE a apple 2"), startsWith("ERROR"));
+        assertThat(server.handle("TOTAL a"), is(equalTo("OK 1 60")));
+        assertThat(server.getSessionCount(), is(equalTo(1)));
+    }
+
+    /**
+     * Ensure that a request longer than the limit is refused without ending the connection
+     */
+    @Test
+    public void CheckOverlongRequestIsRefused() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+
+            StringBuilder request = new StringBuilder("ADD ");
+            for (int i = 0; i < CheckoutServer.MAX_REQUEST_LENGTH; i++) {
+                request.append('a');
+            }
+            out.write(request + " apple\r\nADD a apple\r\n");
+            out.flush();
+
+            assertThat(in.readLine(), startsWith("ERROR"));
+            assertThat(in.readLine(), is(equalTo("OK 1 60")));
+            assertThat(server.getSessionCount(), is(equalTo(1)));
+        }
+    }
+
+    /**
+     * Ensure that only sessions unused for the idle timeout are evicted
+     */
+    @Test
+    public void CheckIdleSessionsAreEvicted() {
+        server.handle("ADD a apple");
+        server.handle("ADD b apple");
+        long now = System.nanoTime();
+
+        assertThat(server.evictIdleSessions(now), is(equalTo(0)));
+        server.handle("TOTAL b");
+        assertThat(server.evictIdleSessions(now + TimeUnit.HOURS.toNanos(1) - TimeUnit.MINUTES.toNanos(1)), is(equalTo(0)));
+        assertThat(server.evictIdleSessions(now + TimeUnit.HOURS.toNanos(1)), is(equalTo(1)));
+        assertThat(server.getSessionCount(), is(equalTo(1)));
+        assertThat(server.handle("TOTAL b"), is(equalTo("OK 1 60")));
+    }
+
+    /**
+     * Ensure that an add racing a close is never made to a session which has already gone, so every item acknowledged
+     * is counted by exactly one close or the final total
+     */
+    @Test
+    public void CheckNoAddIsLostToAClosedSession() throws Exception {
+        AtomicBoolean adding = new AtomicBoolean(true);
+        Thread closer = new Thread(() -> {
+            long closed = 0;
+            while (adding.get()) {
+                String response = server.handle("CLOSE s");
+                if (response.startsWith("OK ")) {
+                    closed += Long.parseLong(response.split(" ")[1]);
+                }
+            }
+            closedItems = closed;
+        });
+        closer.start();
+
+        int added = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (server.handle("ADD s apple").startsWith("OK ")) {
+                added++;
+            }
+        }
+        adding.set(false);
+        closer.join();
+
+        long remaining = Long.parseLong(server.handle("TOTAL s").split(" ")[1]);
+        assertThat(added, is(equalTo(20_000)));
+        assertThat(closedItems + remaining, is(equalTo((long) added)));
+    }
+
+    private volatile long closedItems;
+
+    /**
+     * Ensure that the default connection executor runs tasks, whether or not the JVM has virtual threads
+     */
+    @Test
+    public void CheckDefaultConnectionExecutor() throws Exception {
+        ExecutorService executor = CheckoutServer.newConnectionExecutor();
+        try {
+            Future<String> result = executor.submit(() -> "ran");
+            assertThat(result.get(10, TimeUnit.SECONDS), is(equalTo("ran")));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -131,7 +131,7 @@ public class CheckoutTest {
     @Test
     public void addValidSingleItemsToCartAndCheckCost() {
         addItemToCart(checkout, Product.APPLE);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(60)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(60L)));
     }
 
     /**
@@ -149,7 +149,7 @@ public class CheckoutTest {
     @Test
     public void addInvalidSingleItemToCartAndCheckCartCost() {
         addItemToCart(checkout, null);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(0)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(0L)));
     }
 
     /**
@@ -166,7 +166,7 @@ public class CheckoutTest {
     @Test
     public void addListOfValidItemsCheckPrice() {
         addMultipleItemsToCart(checkout);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(110)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(110L)));
     }
     /**
      * Make sure we can add multiple valid items to cart and check cart contents
@@ -199,7 +199,7 @@ public class CheckoutTest {
             add(null);
         }});
 
-        assertThat(checkout.getCartTotalCost(), is(equalTo(0)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(0L)));
     }
 
     /**
@@ -244,7 +244,7 @@ public class CheckoutTest {
             add(Product.ORANGE);
         }});
 
-        assertThat(checkout.getCartTotalCost(), is(equalTo(110)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(110L)));
     }
 
     /**
@@ -265,7 +265,7 @@ public class CheckoutTest {
     public void checkSingleAppleOffer() {
         addItemToCart(checkout, Product.APPLE);
         addItemToCart(checkout, Product.APPLE);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(60)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(60L)));
     }
 
     /**
@@ -278,7 +278,7 @@ public class CheckoutTest {
         addItemToCart(checkout, Product.APPLE);
         addItemToCart(checkout, Product.ORANGE);
 
-        assertThat(checkout.getCartTotalCost(), is(equalTo(145)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(145L)));
     }
 
     /**
@@ -289,7 +289,7 @@ public class CheckoutTest {
         addItemToCart(checkout, Product.ORANGE);
         addItemToCart(checkout, Product.ORANGE);
         addItemToCart(checkout, Product.ORANGE);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(50)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(50L)));
     }
 
     /**
@@ -303,7 +303,7 @@ public class CheckoutTest {
         addItemToCart(checkout, Product.ORANGE);
         addItemToCart(checkout, Product.APPLE);
 
-        assertThat(checkout.getCartTotalCost(), is(equalTo(135)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(135L)));
     }
 
     /**
@@ -316,7 +316,7 @@ public class CheckoutTest {
 
         addItemToCart(checkout, Product.APPLE);
         addItemToCart(checkout, Product.APPLE);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(120)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(120L)));
     }
 
     /**
@@ -331,7 +331,7 @@ public class CheckoutTest {
         addItemToCart(checkout, Product.ORANGE);
         addItemToCart(checkout, Product.ORANGE);
         addItemToCart(checkout, Product.ORANGE);
-        assertThat(checkout.getCartTotalCost(), is(equalTo(100)));
+        assertThat(checkout.getCartTotalCost(), is(equalTo(100L)));
     }
 
 
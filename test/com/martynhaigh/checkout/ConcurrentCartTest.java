@@ -0,0 +1,125 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ConcurrentCartTest {
+
+    private static final int SCANNERS = 8;
+    private static final int SCANS_PER_SCANNER = 100000;
+
+    /**
+     * Ensure that no adds are lost when many scanners add at once
+     */
+    @Test
+    public void CheckConcurrentAddsAreNotLost() throws Exception {
+        ConcurrentCart cart = new ConcurrentCart();
+        runScanners(cart, () -> {
+        });
+
+        assertThat(cart.getQuantity(Product.APPLE), is(equalTo(SCANNERS * SCANS_PER_SCANNER / 2)));
+        assertThat(cart.getQuantity(Product.ORANGE), is(equalTo(SCANNERS * SCANS_PER_SCANNER / 2)));
+
+        Cart expected = new Cart();
+        expected.add(Product.APPLE, SCANNERS * SCANS_PER_SCANNER / 2);
+        expected.add(Product.ORANGE, SCANNERS * SCANS_PER_SCANNER / 2);
+        assertThat(cart.getTotalCost(), is(equalTo(expected.getTotalCost())));
+    }
+
+    /**
+     * Ensure that snapshots taken while scanners are adding only ever grow, as the cart is add only
+     */
+    @Test
+    public void CheckSnapshotsUnderContentionAreMonotonic() throws Exception {
+        ConcurrentCart cart = new ConcurrentCart();
+        AtomicBoolean monotonic = new AtomicBoolean(true);
+        int[] previous = new int[Product.values().length];
+
+        runScanners(cart, () -> {
+            int[] snapshot = cart.getProductCounts();
+            for (int i = 0; i < snapshot.length; i++) {
+                if (snapshot[i] < previous[i]) {
+                    monotonic.set(false);
+                }
+                previous[i] = snapshot[i];
+            }
+        });
+
+        assertThat(monotonic.get(), is(true));
+    }
+
+    /**
+     * Ensure that a snapshot never sees part of a scan, when every scan adds an apple and an orange together
+     */
+    @Test
+    public void CheckSnapshotsAreConsistentAcrossProducts() throws Exception {
+        ConcurrentCart cart = new ConcurrentCart();
+        AtomicBoolean consistent = new AtomicBoolean(true);
+        int[] pair = new int[Product.values().length];
+        pair[Product.APPLE.ordinal()] = 1;
+        pair[Product.ORANGE.ordinal()] = 1;
+
+        ExecutorService executor = Executors.newFixedThreadPool(SCANNERS);
+        List<Future<?>> scanners = new ArrayList<>();
+        for (int scanner = 0; scanner < SCANNERS; scanner++) {
+            scanners.add(executor.submit(() -> {
+                for (int scan = 0; scan < SCANS_PER_SCANNER / 10; scan++) {
+                    cart.add(pair);
+                }
+            }));
+        }
+        while (!scanners.stream().allMatch(Future::isDone)) {
+            int[] snapshot = cart.getProductCounts();
+            if (snapshot[Product.APPLE.ordinal()] != snapshot[Product.ORANGE.ordinal()]) {
+                consistent.set(false);
+            }
+        }
+        for (Future<?> scanner : scanners) {
+            scanner.get();
+        }
+        executor.shutdown();
+
+        assertThat(consistent.get(), is(true));
+        assertThat(cart.getQuantity(Product.APPLE), is(equalTo(SCANNERS * SCANS_PER_SCANNER / 10)));
+    }
+
+    /**
+     * Runs the scanners to completion, repeatedly calling the reader until they have all finished
+     */
+    private void runScanners(final ConcurrentCart cart, final Runnable reader) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(SCANNERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> scanners = new ArrayList<>();
+        for (int scanner = 0; scanner < SCANNERS; scanner++) {
+            scanners.add(executor.submit(() -> {
+                start.await();
+                for (int scan = 0; scan < SCANS_PER_SCANNER; scan++) {
+                    cart.add(scan % 2 == 0 ? Product.APPLE : Product.ORANGE, 1);
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        while (!scanners.stream().allMatch(Future::isDone)) {
+            reader.run();
+        }
+        for (Future<?> scanner : scanners) {
+            scanner.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,41 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DailyTotalsTest {
+
+    /**
+     * Ensure that totals beyond the range of an int are kept exactly
+     */
+    @Test
+    public void CheckTotalsBeyondIntRange() {
+        DailyTotals totals = new DailyTotals();
+        for (int basket = 0; basket < 3; basket++) {
+            totals.addBasket(Integer.MAX_VALUE);
+            totals.addOfferSavings(Offer.BOGOF_APPLE, Integer.MAX_VALUE);
+        }
+
+        DailyTotals merged = new DailyTotals();
+        merged.merge(totals);
+        merged.merge(totals);
+
+        assertThat(merged.getBasketCount(), is(equalTo(6L)));
+        assertThat(merged.getTotalPence(), is(equalTo(6L * Integer.MAX_VALUE)));
+        assertThat(merged.getOfferSavings(Offer.BOGOF_APPLE), is(equalTo(6L * Integer.MAX_VALUE)));
+        assertThat(merged.getOfferSavings(Offer.THREE_FOR_TWO_ORANGES), is(equalTo(0L)));
+    }
+
+    /**
+     * Ensure that overflowing a long is reported rather than wrapping
+     */
+    @Test(expected = ArithmeticException.class)
+    public void CheckOverflowIsReported() {
+        DailyTotals totals = new DailyTotals();
+        totals.addBasket(Long.MAX_VALUE);
+        totals.addBasket(1);
+    }
+}
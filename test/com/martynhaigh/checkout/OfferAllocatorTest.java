@@ -0,0 +1,102 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OfferAllocatorTest {
+
+    private static final long TIME_BUDGET = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Ensure that a unit isn't used by two overlapping promotions
+     */
+    @Test
+    public void CheckOverlappingOffersDoNotShareUnits() throws IOException {
+        OfferRules rules = OfferRules.load(new StringReader("BOGOF = BUY_GET APPLE 1 1\nBOWL = BUNDLE 35 APPLE ORANGE"));
+        OfferAllocator allocator = new OfferAllocator(rules, TIME_BUDGET);
+
+        // Two apples and an orange: BOGOF saves 60, the bundle saves 50, both together would need three apples
+        assertThat(rules.apply(new int[]{2, 1}).getTotalSavings(), is(equalTo(110L)));
+        assertThat(allocator.allocate(new int[]{2, 1}).getTotalSavings(), is(equalTo(60L)));
+        assertThat(allocator.allocate(new int[]{3, 1}).getTotalSavings(), is(equalTo(110L)));
+        assertThat(allocator.allocate(new int[]{1, 1}).getTotalSavings(), is(equalTo(50L)));
+    }
+
+    /**
+     * Ensure that the allocation beats a greedy one when taking the best saving per unit first isn't optimal
+     */
+    @Test
+    public void CheckAllocationIsOptimalWhereGreedyIsNot() throws IOException {
+        // Six apples: greedy takes five for 100 first (saving 200, 40 per unit) leaving one over, but two lots of three
+        // for 70 (saving 110 each, about 37 per unit) save 220
+        OfferRules rules = OfferRules.load(new StringReader("FIVE = MULTI_BUY APPLE 5 100\nTHREE = MULTI_BUY APPLE 3 70"));
+        assertThat(new OfferAllocator(rules, TIME_BUDGET).allocate(new int[]{6, 0}).getTotalSavings(), is(equalTo(220L)));
+    }
+
+    /**
+     * Ensure that the allocation matches an exhaustive search over random overlapping promotions
+     */
+    @Test
+    public void CheckAllocationMatchesExhaustiveSearch() throws IOException {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 50; trial++) {
+            StringBuilder definitions = new StringBuilder();
+            for (int rule = 0; rule < 4; rule++) {
+                int apples = random.nextInt(3);
+                int oranges = random.nextInt(3) + (apples == 0 ? 1 : 0);
+                StringBuilder bundle = new StringBuilder();
+                for (int i = 0; i < apples; i++) {
+                    bundle.append(" APPLE");
+                }
+                for (int i = 0; i < oranges; i++) {
+                    bundle.append(" ORANGE");
+                }
+                int fullPrice = apples * 60 + oranges * 25;
+                definitions.append("R").append(rule).append(" = BUNDLE ").append(random.nextInt(fullPrice)).append(bundle).append('\n');
+            }
+            OfferRules rules = OfferRules.load(new StringReader(definitions.toString()));
+            int[] productCounts = new int[]{random.nextInt(8), random.nextInt(8)};
+
+            long expected = exhaustive(rules, 0, productCounts);
+
+            assertThat(new OfferAllocator(rules, TIME_BUDGET).allocate(productCounts).getTotalSavings(), is(equalTo(expected)));
+            // Force the branch and bound search rather than the dense table
+            assertThat(new OfferAllocator(rules, TIME_BUDGET, 0).allocate(productCounts).getTotalSavings(), is(equalTo(expected)));
+        }
+    }
+
+    /**
+     * Ensure that running out of time still returns a valid allocation
+     */
+    @Test
+    public void CheckZeroBudgetFallsBackToGreedy() throws IOException {
+        OfferRules rules = OfferRules.load(new StringReader("FIVE = MULTI_BUY APPLE 5 100\nTHREE = MULTI_BUY APPLE 3 70"));
+        assertThat(new OfferAllocator(rules, 0).allocate(new int[]{6, 0}).getTotalSavings(), is(equalTo(200L)));
+    }
+
+    private long exhaustive(final OfferRules rules, final int rule, final int[] productCounts) {
+        if (rule == rules.size()) {
+            return 0;
+        }
+        int[] quantities = rules.getRuleQuantities(rule);
+        long best = exhaustive(rules, rule + 1, productCounts);
+        int[] remaining = productCounts.clone();
+        for (int times = 1; ; times++) {
+            for (int product = 0; product < remaining.length; product++) {
+                remaining[product] -= quantities[product];
+                if (remaining[product] < 0) {
+                    return best;
+                }
+            }
+            best = Math.max(best, times * rules.getRuleSaving(rule) + exhaustive(rules, rule + 1, remaining));
+        }
+    }
+}
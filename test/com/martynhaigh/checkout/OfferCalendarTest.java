@@ -0,0 +1,87 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OfferCalendarTest {
+
+    /**
+     * Ensure that each offer is live from the start of its intervals until just before their end
+     */
+    @Test
+    public void CheckIntervalBounds() {
+        OfferCalendar calendar = new OfferCalendar.Builder()
+                .add(Offer.BOGOF_APPLE, 100, 200)
+                .add(Offer.BOGOF_APPLE, 150, 300)
+                .add(Offer.THREE_FOR_TWO_ORANGES, 200, Long.MAX_VALUE)
+                .build();
+
+        assertThat(calendar.getChangePointCount(), is(equalTo(4)));
+        assertThat(calendar.getActiveOffers(Long.MIN_VALUE), is(equalTo(new Offer[0])));
+        assertThat(calendar.getActiveOffers(99), is(equalTo(new Offer[0])));
+        assertThat(calendar.getActiveOffers(100), is(equalTo(new Offer[]{Offer.BOGOF_APPLE})));
+        assertThat(calendar.getActiveOffers(199), is(equalTo(new Offer[]{Offer.BOGOF_APPLE})));
+        assertThat(calendar.getActiveOffers(200), is(equalTo(new Offer[]{Offer.BOGOF_APPLE, Offer.THREE_FOR_TWO_ORANGES})));
+        assertThat(calendar.getActiveOffers(300), is(equalTo(new Offer[]{Offer.THREE_FOR_TWO_ORANGES})));
+        assertThat(calendar.getActiveOffers(Long.MAX_VALUE), is(equalTo(new Offer[]{Offer.THREE_FOR_TWO_ORANGES})));
+
+        // Windows with the same offers share their array
+        assertThat(calendar.getActiveOffers(120), is(sameInstance(calendar.getActiveOffers(160))));
+    }
+
+    /**
+     * Ensure that a cursor agrees with a direct lookup, whether timestamps arrive in order or not
+     */
+    @Test
+    public void CheckCursorMatchesLookup() {
+        Random random = new Random(22);
+        OfferCalendar.Builder builder = new OfferCalendar.Builder();
+        for (int i = 0; i < 50; i++) {
+            long from = random.nextInt(10000);
+            builder.add(Offer.values()[random.nextInt(Offer.values().length)], from, from + 1 + random.nextInt(500));
+        }
+        OfferCalendar calendar = builder.build();
+
+        OfferCalendar.Cursor sorted = calendar.cursor();
+        OfferCalendar.Cursor shuffled = calendar.cursor();
+        for (long timestamp = -10; timestamp < 11000; timestamp++) {
+            assertThat(sorted.getActiveOffers(timestamp), is(sameInstance(calendar.getActiveOffers(timestamp))));
+            long randomTimestamp = random.nextInt(11000);
+            assertThat(shuffled.getActiveOffers(randomTimestamp), is(sameInstance(calendar.getActiveOffers(randomTimestamp))));
+        }
+    }
+
+    /**
+     * Ensure that baskets are priced with only the offers live at their time
+     */
+    @Test
+    public void CheckPricingAtATime() throws IOException {
+        OfferCalendar calendar = OfferCalendar.load(new StringReader(
+                "BOGOF_APPLE = 2024-01-01T00:00:00Z/2024-02-01T00:00:00Z, 2024-06-01T00:00:00Z/\n"
+                        + "three_for_two_oranges = /2024-03-01T00:00:00Z\n"));
+        OfferCalendar.Cursor cursor = calendar.cursor();
+        int[] productCounts = {2, 3};
+
+        assertThat(cursor.getTotalCost(productCounts, Instant.parse("2023-12-31T23:59:59Z").toEpochMilli()), is(equalTo(170L)));
+        assertThat(cursor.getTotalCost(productCounts, Instant.parse("2024-01-15T00:00:00Z").toEpochMilli()), is(equalTo(110L)));
+        assertThat(cursor.getTotalCost(productCounts, Instant.parse("2024-04-01T00:00:00Z").toEpochMilli()), is(equalTo(195L)));
+        assertThat(cursor.applyOffers(productCounts, Instant.parse("2025-01-01T00:00:00Z").toEpochMilli()).getTotalSavings(), is(equalTo(60L)));
+    }
+
+    /**
+     * Ensure that an interval which ends before it starts is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckEmptyIntervalIsRejected() {
+        new OfferCalendar.Builder().add(Offer.BOGOF_APPLE, 200, 200);
+    }
+}
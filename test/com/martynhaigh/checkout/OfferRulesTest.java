@@ -0,0 +1,166 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OfferRulesTest {
+
+    /**
+     * Ensure that the bundled rule file matches the built in offers
+     */
+    @Test
+    public void CheckBundledRulesMatchBuiltInOffers() throws IOException {
+        OfferRules rules = OfferRules.load(Paths.get("config", "offers.properties"));
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            int[] productCounts = new int[]{random.nextInt(20), random.nextInt(20)};
+            assertThat(rules.apply(productCounts).getTotalSavings(), is(equalTo(Offer.applyAllOffers(productCounts).getTotalSavings())));
+        }
+    }
+
+    /**
+     * Ensure that each rule type saves the expected amount
+     */
+    @Test
+    public void CheckEachRuleType() throws IOException {
+        assertThat(savings("R = MULTI_BUY ORANGE 3 50", 0, 7), is(equalTo(50L)));
+        assertThat(savings("R = PERCENT_OFF APPLE 10", 3, 0), is(equalTo(18L)));
+        assertThat(savings("R = BUNDLE 70 APPLE ORANGE", 2, 5), is(equalTo(30L)));
+        assertThat(savings("R = BUNDLE 100 APPLE APPLE ORANGE", 3, 5), is(equalTo(45L)));
+        assertThat(savings("R = BUY_GET APPLE 2 1", 6, 0), is(equalTo(120L)));
+    }
+
+    /**
+     * Ensure that rules which don't apply aren't reported
+     */
+    @Test
+    public void CheckOnlyAppliedRulesAreReported() throws IOException {
+        OfferRules rules = OfferRules.load(new StringReader("A = BUNDLE 70 APPLE ORANGE\nB = PERCENT_OFF ORANGE 20"));
+        assertThat(rules.size(), is(equalTo(2)));
+        assertThat(rules.apply(new int[]{1, 0}).size(), is(equalTo(0)));
+        assertThat(rules.apply(new int[]{0, 1}).size(), is(equalTo(1)));
+    }
+
+    /**
+     * Ensure that rules referring to unknown products are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckUnknownProductIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = BUY_GET PINEAPPLE 1 1"));
+    }
+
+    /**
+     * Ensure that rules which don't save anything are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckRuleWithoutSavingIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = MULTI_BUY APPLE 2 500"));
+    }
+
+    /**
+     * Ensure that a rule needing no units to buy is rejected rather than given away with every unit
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckZeroBuyIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = BUY_GET APPLE 0 1"));
+    }
+
+    /**
+     * Ensure that a negative multi-buy quantity is rejected, even where it would appear to save money
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckNegativeQuantityIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = MULTI_BUY ORANGE -2 -100"));
+    }
+
+    /**
+     * Ensure that a percentage above 100 is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckPercentageAboveHundredIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = PERCENT_OFF APPLE 150"));
+    }
+
+    /**
+     * Ensure that a percentage of zero is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckZeroPercentageIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = PERCENT_OFF APPLE 0"));
+    }
+
+    /**
+     * Ensure that a negative multi-buy price is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckNegativeMultiBuyPriceIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = MULTI_BUY ORANGE 3 -10"));
+    }
+
+    /**
+     * Ensure that a negative bundle price is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckNegativeBundlePriceIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = BUNDLE -10 APPLE ORANGE"));
+    }
+
+    /**
+     * Ensure that a bundle priced at its full price is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckBundleAtFullPriceIsRejected() throws IOException {
+        OfferRules.load(new StringReader("R = BUNDLE 85 APPLE ORANGE"));
+    }
+
+    /**
+     * Ensure that values left over after a rule's definition are rejected rather than ignored
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckLeftoverTokensAreRejected() throws IOException {
+        OfferRules.load(new StringReader("R = BUY_GET APPLE 1 1 2"));
+    }
+
+    /**
+     * Ensure that a free price is allowed
+     */
+    @Test
+    public void CheckFreeBundleIsAllowed() throws IOException {
+        assertThat(savings("R = BUNDLE 0 APPLE ORANGE", 1, 1), is(equalTo(85L)));
+    }
+
+    /**
+     * Ensure that savings follow a reprice, and that an offer left above the full price saves nothing
+     */
+    @Test
+    public void CheckSavingsFollowReprice() throws IOException {
+        OfferRules rules = OfferRules.load(new StringReader("A = BUY_GET APPLE 1 1\nB = MULTI_BUY ORANGE 3 50\nC = PERCENT_OFF APPLE 50"));
+        int[] productCounts = new int[]{2, 3};
+        assertThat(rules.apply(productCounts).getTotalSavings(), is(equalTo(60L + 25L + 60L)));
+
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 10).add("Orange", 10).build());
+            assertThat(rules.apply(productCounts).getTotalSavings(), is(equalTo(10L + 10L)));
+            assertThat(rules.apply(productCounts).size(), is(equalTo(2)));
+            assertThat(rules.getRuleSaving(1), is(equalTo(0L)));
+        } finally {
+            Catalogue.setActive(original);
+        }
+    }
+
+    private long savings(final String rule, final int apples, final int oranges) throws IOException {
+        int[] productCounts = new int[Product.values().length];
+        productCounts[Product.APPLE.ordinal()] = apples;
+        productCounts[Product.ORANGE.ordinal()] = oranges;
+        return OfferRules.load(new StringReader(rule)).apply(productCounts).getTotalSavings();
+    }
+}
@@ -22,7 +22,7 @@ public class OfferTest {
         }};
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(0)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(0L)));
     }
 
     /**
@@ -36,7 +36,7 @@ public class OfferTest {
         }};
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(60)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(60L)));
     }
 
     /**
@@ -52,7 +52,7 @@ public class OfferTest {
         }};
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(120)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(120L)));
     }
 
     /**
@@ -66,7 +66,7 @@ public class OfferTest {
         }};
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(0)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(0L)));
     }
 
     /**
@@ -81,7 +81,7 @@ public class OfferTest {
         }};
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(25)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(25L)));
     }
 
     /**
@@ -99,7 +99,7 @@ public class OfferTest {
         }};
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(50)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(50L)));
     }
 
     /**
@@ -122,6 +122,78 @@ public class OfferTest {
         Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(cart);
 
         // Savings of 2 * 25 + 2 * 60
-        assertThat(appliedOffers.getTotalSavings(), is(equalTo(170)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(170L)));
+    }
+
+    /**
+     * Ensure that offers evaluated from product counts match those evaluated from the cart itself
+     */
+    @Test
+    public void CheckOffersFromProductCounts() {
+        int[] productCounts = new int[Product.values().length];
+        productCounts[Product.APPLE.ordinal()] = 4;
+        productCounts[Product.ORANGE.ordinal()] = 6;
+        Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(productCounts);
+
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(170L)));
+    }
+
+    /**
+     * Ensure that the savings delta for an add and remove follow the offer thresholds
+     */
+    @Test
+    public void CheckSavingsDeltaOnAddAndRemove() {
+        int[] productCounts = new int[Product.values().length];
+        productCounts[Product.ORANGE.ordinal()] = 2;
+
+        assertThat(Offer.THREE_FOR_TWO_ORANGES.onAdd(productCounts, Product.ORANGE), is(equalTo(25L)));
+        assertThat(Offer.THREE_FOR_TWO_ORANGES.onRemove(productCounts, Product.ORANGE), is(equalTo(0L)));
+        assertThat(Offer.BOGOF_APPLE.onAdd(productCounts, Product.ORANGE), is(equalTo(0L)));
+        assertThat(productCounts[Product.ORANGE.ordinal()], is(equalTo(2)));
+    }
+
+    /**
+     * Ensure that only offers which applied are kept, with details created on request
+     */
+    @Test
+    public void CheckOnlyAppliedOffersAreKept() {
+        int[] productCounts = new int[Product.values().length];
+        productCounts[Product.APPLE.ordinal()] = 5;
+        productCounts[Product.ORANGE.ordinal()] = 2;
+        Offer.AppliedOffers appliedOffers = Offer.applyAllOffers(productCounts);
+
+        assertThat(appliedOffers.size(), is(equalTo(1)));
+        assertThat(appliedOffers.getName(0), is(equalTo("BOGOF_APPLE")));
+        assertThat(appliedOffers.getTimesApplied(0), is(equalTo(2)));
+        assertThat(appliedOffers.getTotalSaving(0), is(equalTo(120L)));
+        assertThat(appliedOffers.getOffers().size(), is(equalTo(1)));
+        assertThat(appliedOffers.getOffers().get(0).getTotalSaving(), is(equalTo(120L)));
+        assertThat(Offer.applyAllOffers(new int[Product.values().length]).size(), is(equalTo(0)));
+    }
+
+    /**
+     * Ensure that the total savings are kept as offers are added, growing past the initial capacity
+     */
+    @Test
+    public void CheckSavingsAddedInline() {
+        Offer.AppliedOffers appliedOffers = new Offer.AppliedOffers();
+        for (int i = 0; i < 100; i++) {
+            appliedOffers.add("OFFER_" + i, i % 3, 10);
+        }
+
+        // 33 offers applied once and 33 twice
+        assertThat(appliedOffers.size(), is(equalTo(66)));
+        assertThat(appliedOffers.getTotalSavings(), is(equalTo(990L)));
+        assertThat(appliedOffers.getName(65), is(equalTo("OFFER_98")));
+    }
+
+    /**
+     * Ensure that an offer past the end of those applied can't be read
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void CheckIndexPastAppliedOffers() {
+        int[] productCounts = new int[Product.values().length];
+        productCounts[Product.APPLE.ordinal()] = 2;
+        Offer.applyAllOffers(productCounts).getTotalSaving(1);
     }
 }
@@ -0,0 +1,90 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PricingCacheTest {
+
+    /**
+     * Ensure that identical baskets are only priced once
+     */
+    @Test
+    public void CheckIdenticalBasketsHitTheCache() {
+        PricingCache cache = new PricingCache(10);
+        assertThat(cache.getTotalCost(new int[]{2, 3}), is(equalTo(110L)));
+        assertThat(cache.getTotalCost(new int[]{2, 3}), is(equalTo(110L)));
+        assertThat(cache.getAppliedOffers(new int[]{2, 3}).getTotalSavings(), is(equalTo(85L)));
+
+        assertThat(cache.getMissCount(), is(equalTo(1L)));
+        assertThat(cache.getHitCount(), is(equalTo(2L)));
+    }
+
+    /**
+     * Ensure that the least recently used basket is evicted once the cache is full
+     */
+    @Test
+    public void CheckLeastRecentlyUsedBasketIsEvicted() {
+        PricingCache cache = new PricingCache(2);
+        cache.getTotalCost(new int[]{1, 0});
+        cache.getTotalCost(new int[]{0, 1});
+        cache.getTotalCost(new int[]{1, 0});
+        cache.getTotalCost(new int[]{1, 1});
+
+        assertThat(cache.size(), is(equalTo(2)));
+        assertThat(cache.getEvictionCount(), is(equalTo(1L)));
+
+        // {0, 1} was evicted, {1, 0} was not
+        cache.getTotalCost(new int[]{1, 0});
+        assertThat(cache.getHitCount(), is(equalTo(2L)));
+        cache.getTotalCost(new int[]{0, 1});
+        assertThat(cache.getMissCount(), is(equalTo(4L)));
+    }
+
+    /**
+     * Ensure that cached prices are dropped when the catalogue or offers change
+     */
+    @Test
+    public void CheckCatalogueAndOfferChangesInvalidate() throws IOException {
+        PricingCache cache = new PricingCache(10);
+        assertThat(cache.getTotalCost(new int[]{1, 0}), is(equalTo(60L)));
+
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 50).add("Orange", 30).build());
+            assertThat(cache.getTotalCost(new int[]{1, 0}), is(equalTo(50L)));
+        } finally {
+            Catalogue.setActive(original);
+        }
+
+        cache.setOfferRules(OfferRules.load(new StringReader("R = PERCENT_OFF APPLE 50")));
+        assertThat(cache.getTotalCost(new int[]{1, 0}), is(equalTo(30L)));
+        assertThat(cache.getMissCount(), is(equalTo(3L)));
+    }
+
+    /**
+     * Ensure that baskets priced with offer rules are priced again at the new prices after a reprice
+     */
+    @Test
+    public void CheckOfferRulesFollowReprice() throws IOException {
+        PricingCache cache = new PricingCache(10, OfferRules.load(new StringReader("A = BUY_GET APPLE 1 1\nB = MULTI_BUY ORANGE 3 50")));
+        assertThat(cache.getTotalCost(new int[]{2, 3}), is(equalTo(110L)));
+
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 10).add("Orange", 10).build());
+            // Only buy one get one free still saves anything
+            assertThat(cache.getTotalCost(new int[]{2, 3}), is(equalTo(40L)));
+            assertThat(cache.getAppliedOffers(new int[]{2, 3}).size(), is(equalTo(1)));
+        } finally {
+            Catalogue.setActive(original);
+        }
+        assertThat(cache.getTotalCost(new int[]{2, 3}), is(equalTo(110L)));
+        assertThat(cache.getMissCount(), is(equalTo(3L)));
+    }
+}
@@ -0,0 +1,120 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Run by its own surefire execution with {@code -Dcheckout.metrics=true} and every call timed, as the switches are read
+ * once per JVM
+ */
+public class PricingMetricsTest {
+
+    @Before
+    public void setUp() {
+        assertThat("Run with -Dcheckout.metrics=true", PricingMetrics.ENABLED, is(equalTo(true)));
+        assertThat("Run with -Dcheckout.metrics.sampleInterval=1", PricingMetrics.SAMPLE_INTERVAL, is(equalTo(1)));
+        PricingMetrics.getInstance().reset();
+    }
+
+    /**
+     * Ensure that the CLI path counts items scanned and invalid names rejected
+     */
+    @Test
+    public void CheckCountersAreRecorded() {
+        Checkout checkout = new Checkout();
+        checkout.addItemsToCart(checkout.parseShoppingList(new String[]{"apple", "pear"}));
+        checkout.getPrintout();
+
+        assertThat(PricingMetrics.getInstance().getItemsScanned(), is(equalTo(1L)));
+        assertThat(PricingMetrics.getInstance().getInvalidNamesRejected(), is(equalTo(1L)));
+        assertThat(PricingMetrics.getInstance().getStageCount(PricingMetrics.Stage.PARSE_SHOPPING_LIST), is(equalTo(1L)));
+        assertThat(PricingMetrics.getInstance().getStageCount(PricingMetrics.Stage.PRINTOUT), is(equalTo(1L)));
+    }
+
+    /**
+     * Ensure that offers applied through the running totals of a cart are counted, not just those applied in bulk, but
+     * not timed on every add and remove
+     */
+    @Test
+    public void CheckCartOffersAreRecorded() {
+        Cart cart = new Cart();
+        cart.add(Product.APPLE, 5);
+        cart.add(Product.ORANGE, 3);
+        cart.remove(Product.APPLE, 1);
+
+        PricingMetrics metrics = PricingMetrics.getInstance();
+        // Two apple offers and one orange offer left in the cart
+        assertThat(metrics.getOffersApplied(), is(equalTo(3L)));
+        assertThat(metrics.getStageCount(PricingMetrics.Stage.APPLY_OFFERS), is(equalTo(0L)));
+        for (Offer offer : Offer.values()) {
+            assertThat(metrics.getOfferCount(offer), is(equalTo(0L)));
+        }
+    }
+
+    /**
+     * Ensure that offers applied one at a time while pricing a basket are recorded
+     */
+    @Test
+    public void CheckSavingsAreRecorded() {
+        int[] productCounts = {4, 7};
+        Offer.BOGOF_APPLE.getSaving(productCounts);
+        Offer.applyAllOffers(productCounts);
+
+        PricingMetrics metrics = PricingMetrics.getInstance();
+        assertThat(metrics.getOffersApplied(), is(equalTo(2L + 2L + 2L)));
+        assertThat(metrics.getOfferCount(Offer.BOGOF_APPLE), is(equalTo(2L)));
+        assertThat(metrics.getOfferCount(Offer.THREE_FOR_TWO_ORANGES), is(equalTo(1L)));
+        assertThat(metrics.getStageCount(PricingMetrics.Stage.APPLY_OFFERS), is(equalTo(1L)));
+    }
+
+    /**
+     * Ensure that names the scan pipeline can't match are counted, whether too long to hold or just unknown
+     */
+    @Test
+    public void CheckPipelineRejectsAreRecorded() throws InterruptedException {
+        try (ScanPipeline pipeline = new ScanPipeline(8, (sequence, itemCount, totalPence) -> {
+        })) {
+            pipeline.publish("apple");
+            pipeline.publish("pear");
+            pipeline.publish("apple with a long tail");
+            pipeline.awaitRefreshed();
+        }
+        assertThat(PricingMetrics.getInstance().getInvalidNamesRejected(), is(equalTo(2L)));
+    }
+
+    /**
+     * Ensure that counts kept by threads are still added up once the threads have exited and been swept up
+     */
+    @Test
+    public void CheckCountsOutliveThreads() throws InterruptedException {
+        for (int thread = 0; thread < 300; thread++) {
+            Thread scanner = new Thread(() -> {
+                PricingMetrics.itemsScanned(2, 0);
+                PricingMetrics.invalidNameRejected();
+            });
+            scanner.start();
+            scanner.join();
+        }
+        assertThat(PricingMetrics.getInstance().getItemsScanned(), is(equalTo(600L)));
+        assertThat(PricingMetrics.getInstance().getInvalidNamesRejected(), is(equalTo(300L)));
+    }
+
+    /**
+     * Ensure that the text dump covers every stage and offer
+     */
+    @Test
+    public void CheckDumpCoversStagesAndOffers() {
+        String dump = PricingMetrics.getInstance().dump();
+        for (PricingMetrics.Stage stage : PricingMetrics.Stage.values()) {
+            assertThat(dump, containsString("stage " + stage));
+        }
+        for (Offer offer : Offer.values()) {
+            assertThat(dump, containsString("offer " + offer));
+        }
+    }
+}
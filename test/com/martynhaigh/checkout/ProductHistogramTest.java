@@ -0,0 +1,98 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProductHistogramTest {
+
+    /**
+     * Ensure that every counting path agrees with a simple count, including ranges which don't fill a whole long
+     */
+    @Test
+    public void CheckCountsMatchSimpleCount() {
+        Random random = new Random(5);
+        for (int length = 0; length < 100; length++) {
+            byte[] ordinals = new byte[length];
+            short[] shortOrdinals = new short[length];
+            int[] expected = new int[Product.values().length];
+            for (int i = 0; i < length; i++) {
+                ordinals[i] = (byte) random.nextInt(Product.values().length);
+                shortOrdinals[i] = ordinals[i];
+                expected[ordinals[i]]++;
+            }
+
+            assertThat(ProductHistogram.count(ordinals), is(equalTo(expected)));
+            int[] laneCounts = new int[Product.values().length];
+            ProductHistogram.count(ByteBuffer.wrap(ordinals), 0, length, laneCounts);
+            assertThat(laneCounts, is(equalTo(expected)));
+            assertThat(ProductHistogram.countScalar(ordinals, 0, length), is(equalTo(expected)));
+            assertThat(ProductHistogram.count(shortOrdinals), is(equalTo(expected)));
+        }
+    }
+
+    /**
+     * Ensure that a sub range of the array is counted
+     */
+    @Test
+    public void CheckCountingARange() {
+        byte[] ordinals = new byte[20];
+        ordinals[2] = (byte) Product.ORANGE.ordinal();
+        ordinals[15] = (byte) Product.ORANGE.ordinal();
+
+        int[] productCounts = ProductHistogram.count(ordinals, 1, 14);
+        assertThat(productCounts[Product.APPLE.ordinal()], is(equalTo(12)));
+        assertThat(productCounts[Product.ORANGE.ordinal()], is(equalTo(1)));
+    }
+
+    /**
+     * Ensure that an ordinal which isn't a product is rejected by the lanes rather than counted as another product
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckInvalidOrdinalInLanes() {
+        byte[] ordinals = new byte[16];
+        ordinals[3] = (byte) Product.values().length;
+        ProductHistogram.count(ByteBuffer.wrap(ordinals), 0, ordinals.length, new int[Product.values().length]);
+    }
+
+    /**
+     * Ensure that an ordinal which isn't a product is rejected after the last whole long
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckInvalidOrdinalAfterLanes() {
+        byte[] ordinals = new byte[11];
+        ordinals[9] = (byte) 0xFF;
+        ProductHistogram.count(ByteBuffer.wrap(ordinals), 0, ordinals.length, new int[Product.values().length]);
+    }
+
+    /**
+     * Ensure that arrays are rejected with an invalid ordinal, whichever kernel counts them
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckInvalidOrdinalInArray() {
+        byte[] ordinals = new byte[1000];
+        ordinals[700] = (byte) Product.values().length;
+        ProductHistogram.count(ordinals);
+    }
+
+    /**
+     * Ensure that the Vector API kernel is used whenever it was built and the JVM has loaded its module
+     */
+    @Test
+    public void CheckVectorKernelIsUsedWhenAvailable() {
+        boolean available;
+        try {
+            Class.forName("jdk.incubator.vector.ByteVector");
+            Class.forName("com.martynhaigh.checkout.VectorProductHistogram");
+            available = true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            available = false;
+        }
+        assertThat(ProductHistogram.isVectorised(), is(equalTo(available)));
+    }
+}
@@ -0,0 +1,44 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProductNameParserTest {
+
+    /**
+     * Ensure that names are matched within a range of a larger sequence
+     */
+    @Test
+    public void CheckParsingCharacterRange() {
+        String line = "apple, Orange ,pear";
+        assertThat(ProductNameParser.parse(line, 0, 5), is(equalTo(Product.APPLE)));
+        assertThat(ProductNameParser.parse(line, 6, 14), is(equalTo(Product.ORANGE)));
+        assertThat(ProductNameParser.parse(line, 15, 19), is(nullValue()));
+    }
+
+    /**
+     * Ensure that names are matched within a range of ASCII bytes
+     */
+    @Test
+    public void CheckParsingByteRange() {
+        byte[] line = "apple, Orange ,pear".getBytes(StandardCharsets.US_ASCII);
+        assertThat(ProductNameParser.parse(line, 0, 5), is(equalTo(Product.APPLE)));
+        assertThat(ProductNameParser.parse(line, 6, 14), is(equalTo(Product.ORANGE)));
+        assertThat(ProductNameParser.parse(line, 15, 19), is(nullValue()));
+    }
+
+    /**
+     * Ensure that empty and whitespace only names are rejected
+     */
+    @Test
+    public void CheckEmptyNames() {
+        assertThat(ProductNameParser.parse(""), is(nullValue()));
+        assertThat(ProductNameParser.parse(" \t "), is(nullValue()));
+    }
+}
@@ -2,6 +2,8 @@ package com.martynhaigh.checkout;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -11,11 +13,24 @@ public class ProductTest {
 
     @Test
     public void CheckApplePrice() throws Exception {
-        assertThat(Product.APPLE.getPriceInPence(), is(equalTo(60)));
+        assertThat(Product.APPLE.getPriceInPence(), is(equalTo(60L)));
     }
 
     @Test
     public void CheckOrangePrice() throws Exception {
-        assertThat(Product.ORANGE.getPriceInPence(), is(equalTo(25)));
+        assertThat(Product.ORANGE.getPriceInPence(), is(equalTo(25L)));
+    }
+
+    @Test
+    public void CheckProductCountsIgnoreNulls() throws Exception {
+        int[] counts = Product.countProducts(Arrays.asList(Product.APPLE, null, Product.ORANGE, Product.APPLE));
+        assertThat(counts[Product.APPLE.ordinal()], is(equalTo(2)));
+        assertThat(counts[Product.ORANGE.ordinal()], is(equalTo(1)));
+    }
+
+    @Test
+    public void CheckPriceOfProductCounts() throws Exception {
+        int[] counts = Product.countProducts(Arrays.asList(Product.APPLE, Product.ORANGE, Product.ORANGE));
+        assertThat(Product.getPriceInPence(counts), is(equalTo(110L)));
     }
 }
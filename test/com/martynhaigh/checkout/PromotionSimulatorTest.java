@@ -0,0 +1,79 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PromotionSimulatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Ensure that every scenario prices the baskets as applying its rules to each basket would, across several chunks
+     */
+    @Test
+    public void CheckScenariosMatchRules() throws IOException {
+        List<OfferRules> scenarios = Arrays.asList(
+                OfferRules.load(Paths.get("config", "offers.properties")),
+                OfferRules.load(new StringReader("A = BUY_GET APPLE 2 1\nB = BUNDLE 70 APPLE ORANGE")),
+                OfferRules.load(new StringReader("A = BUY_GET APPLE 1 2\nB = BUNDLE 100 APPLE APPLE ORANGE\nC = PERCENT_OFF ORANGE 20")),
+                OfferRules.load(new StringReader("")));
+
+        Random random = new Random(23);
+        PromotionSimulator.Builder builder = new PromotionSimulator.Builder();
+        long fullPrice = 0;
+        long[] expectedSavings = new long[scenarios.size()];
+        for (int basket = 0; basket < 200000; basket++) {
+            int[] productCounts = new int[]{random.nextInt(12), random.nextInt(12)};
+            builder.add(productCounts);
+            fullPrice += Product.getPriceInPence(productCounts);
+            for (int scenario = 0; scenario < scenarios.size(); scenario++) {
+                expectedSavings[scenario] += scenarios.get(scenario).apply(productCounts).getTotalSavings();
+            }
+        }
+
+        PromotionSimulator.Results results = builder.build().simulate(scenarios);
+        assertThat(results.getBasketCount(), is(equalTo(200000)));
+        assertThat(results.getScenarioCount(), is(equalTo(scenarios.size())));
+        assertThat(results.getFullPrice(), is(equalTo(fullPrice)));
+        for (int scenario = 0; scenario < scenarios.size(); scenario++) {
+            assertThat(results.getSavings(scenario), is(equalTo(expectedSavings[scenario])));
+            assertThat(results.getRevenue(scenario), is(equalTo(fullPrice - expectedSavings[scenario])));
+        }
+    }
+
+    /**
+     * Ensure that the bundled rules reproduce the totals of a basket log
+     */
+    @Test
+    public void CheckLoadedLogMatchesPricer() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        BasketLogWriter.convert(new StringReader("Apple, Apple, Orange\norange,ORANGE, orange ,pear\n\nApple"), file);
+
+        PromotionSimulator simulator = PromotionSimulator.load(file);
+        PromotionSimulator.Results results = simulator.simulate(Arrays.asList(OfferRules.load(Paths.get("config", "offers.properties"))));
+        assertThat(simulator.getBasketCount(), is(equalTo(4)));
+        assertThat(results.getRevenue(0), is(equalTo(new BasketLogPricer().price(file).getTotalPence())));
+    }
+
+    /**
+     * Ensure that baskets with negative quantities are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckNegativeQuantityIsRejected() {
+        new PromotionSimulator.Builder().add(new int[]{1, -1});
+    }
+}
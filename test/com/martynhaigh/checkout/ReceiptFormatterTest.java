@@ -0,0 +1,75 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ReceiptFormatterTest {
+
+    // The largest total the float based template renders to the penny, £131,072.00
+    private static final int LARGEST_EXACT_FLOAT_TOTAL = 13107200;
+
+    /**
+     * Ensure that the summary matches the original template, formatted with the root locale, wherever the template's
+     * float arithmetic is exact
+     */
+    @Test
+    public void CheckSummaryMatchesTemplate() {
+        ReceiptFormatter formatter = new ReceiptFormatter();
+        for (int total = 0; total <= LARGEST_EXACT_FLOAT_TOTAL; total += total < 100000 ? 1 : 997) {
+            String expected = String.format(Locale.ROOT, Checkout.CART_PRINTOUT_TEMPLATE, total % 50, (float) total / 100);
+            assertThat(formatter.formatSummary(total % 50, total).toString(), is(equalTo(expected)));
+        }
+    }
+
+    /**
+     * Ensure that large totals are rendered exactly, where the template's float arithmetic mis-rounds
+     */
+    @Test
+    public void CheckLargeTotalsAreExact() {
+        assertThat(new ReceiptFormatter().formatSummary(1, 13107201).toString(), is(equalTo("1 items in cart coming to a total of £131072.01")));
+
+        StringBuilder builder = new StringBuilder();
+        ReceiptFormatter.appendPounds(builder, Long.MAX_VALUE);
+        assertThat(builder.toString(), is(equalTo("£92233720368547758.07")));
+    }
+
+    /**
+     * Ensure that negative totals match the template, with the sign after the pound sign, down to the smallest long
+     */
+    @Test
+    public void CheckNegativeAmounts() {
+        ReceiptFormatter formatter = new ReceiptFormatter();
+        for (int total = -1; total >= -100000; total -= total > -1000 ? 1 : 997) {
+            String expected = String.format(Locale.ROOT, Checkout.CART_PRINTOUT_TEMPLATE, 1, (float) total / 100);
+            assertThat(formatter.formatSummary(1, total).toString(), is(equalTo(expected)));
+        }
+
+        StringBuilder builder = new StringBuilder();
+        ReceiptFormatter.appendPounds(builder, Long.MIN_VALUE);
+        assertThat(builder.toString(), is(equalTo("£-92233720368547758.08")));
+    }
+
+    /**
+     * Ensure that the itemised receipt lists products, offers and the summary
+     */
+    @Test
+    public void CheckItemisedReceipt() {
+        int[] productCounts = new int[Product.values().length];
+        productCounts[Product.APPLE.ordinal()] = 3;
+        productCounts[Product.ORANGE.ordinal()] = 1;
+
+        String receipt = new ReceiptFormatter().formatReceipt(productCounts, Offer.applyAllOffers(productCounts)).toString();
+
+        assertThat(Arrays.asList(receipt.split("\n")), is(equalTo(Arrays.asList(
+                "APPLE x3 £1.80",
+                "ORANGE x1 £0.25",
+                "BOGOF_APPLE x1 -£0.60",
+                "4 items in cart coming to a total of £1.45"))));
+    }
+}
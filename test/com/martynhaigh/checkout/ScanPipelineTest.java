@@ -0,0 +1,128 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ScanPipelineTest {
+
+    private static final String[] SCANS = {"Apple", " orange ", "ORANGE", "pear", "Apple  with a long tail", "applé", "", "orange"};
+
+    /**
+     * Ensure that the refreshed total matches a checkout given the same scans, including names which don't match
+     */
+    @Test
+    public void CheckTotalMatchesCheckout() throws InterruptedException {
+        AtomicLong lastTotal = new AtomicLong();
+        AtomicInteger lastCount = new AtomicInteger();
+        Checkout checkout = new Checkout();
+        Random random = new Random(24);
+        try (ScanPipeline pipeline = new ScanPipeline(64, (sequence, itemCount, totalPence) -> {
+            lastCount.set(itemCount);
+            lastTotal.set(totalPence);
+        })) {
+            for (int i = 0; i < 10000; i++) {
+                String scan = SCANS[random.nextInt(SCANS.length)];
+                pipeline.publish(scan);
+                checkout.addItemsToCart(checkout.parseItemName(scan), 1);
+            }
+            pipeline.awaitRefreshed();
+
+            assertThat(pipeline.getPublishedCount(), is(equalTo(10000L)));
+            assertThat(pipeline.getLatencies().getTotalCount(), is(equalTo(10000L)));
+        }
+        assertThat(lastCount.get(), is(equalTo(checkout.getCartItems().size())));
+        assertThat(lastTotal.get(), is(equalTo(checkout.getCartTotalCost())));
+    }
+
+    /**
+     * Ensure that a full ring refuses scans until the refresh catches up, then refreshes the backlog in fewer batches
+     * than scans
+     */
+    @Test
+    public void CheckBackpressureAndBatching() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger refreshes = new AtomicInteger();
+        AtomicLong lastTotal = new AtomicLong();
+        try (ScanPipeline pipeline = new ScanPipeline(8, (sequence, itemCount, totalPence) -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            refreshes.incrementAndGet();
+            lastTotal.set(totalPence);
+        })) {
+            int accepted = 0;
+            while (pipeline.tryPublish("apple")) {
+                accepted++;
+            }
+            // The refresh blocked on the first batch still holds its slots, so at most a ring's worth are accepted
+            assertThat(accepted, is(equalTo(8)));
+
+            release.countDown();
+            for (int i = 0; i < 92; i++) {
+                pipeline.publish("apple");
+            }
+            pipeline.awaitRefreshed();
+            assertThat(refreshes.get() < 100, is(true));
+        }
+        // Buy one get one free on 100 apples
+        assertThat(lastTotal.get(), is(equalTo(50 * 60L)));
+    }
+
+    /**
+     * Ensure that names are matched against the active catalogue, so products missing from it are not added
+     */
+    @Test
+    public void CheckActiveCatalogueIsUsed() throws InterruptedException {
+        AtomicInteger lastCount = new AtomicInteger();
+        AtomicLong lastTotal = new AtomicLong();
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(new Catalogue.Builder().add("Apple", 50).build());
+            try (ScanPipeline pipeline = new ScanPipeline(8, (sequence, itemCount, totalPence) -> {
+                lastCount.set(itemCount);
+                lastTotal.set(totalPence);
+            })) {
+                pipeline.publish("apple");
+                pipeline.publish("orange");
+                pipeline.awaitRefreshed();
+            }
+        } finally {
+            Catalogue.setActive(original);
+        }
+        assertThat(lastCount.get(), is(equalTo(1)));
+        assertThat(lastTotal.get(), is(equalTo(50L)));
+    }
+
+    /**
+     * Ensure that a ring which isn't a power of two is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void CheckCapacityMustBePowerOfTwo() {
+        new ScanPipeline(10, (sequence, itemCount, totalPence) -> {
+        }).close();
+    }
+
+    /**
+     * Ensure that a stage stopped by an interrupt fails the pipeline, rather than leaving the scanner waiting forever
+     */
+    @Test(expected = IllegalStateException.class)
+    public void CheckInterruptedStageFailsPipeline() throws InterruptedException {
+        // The listener runs on the total refresh thread
+        try (ScanPipeline pipeline = new ScanPipeline(8, (sequence, itemCount, totalPence) -> Thread.currentThread().interrupt())) {
+            pipeline.publish("apple");
+            pipeline.awaitRefreshed();
+            pipeline.publish("apple");
+            pipeline.awaitRefreshed();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ShardCoordinatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path log;
+    private DailyTotals expected;
+
+    @Before
+    public void setUp() throws IOException {
+        log = temporaryFolder.newFile().toPath();
+        try (BasketLogWriter writer = new BasketLogWriter(log)) {
+            for (int basket = 0; basket < 10000; basket++) {
+                for (int item = 0; item < basket % 13; item++) {
+                    writer.addItem(item % 3 == 0 ? Product.ORANGE : Product.APPLE);
+                }
+                writer.endBasket();
+            }
+        }
+        expected = new BasketLogPricer().price(log);
+    }
+
+    /**
+     * Ensure that shards priced by separate worker JVMs add up to pricing the whole log at once
+     */
+    @Test
+    public void CheckLocalWorkers() throws IOException, InterruptedException {
+        assertTotals(ShardCoordinator.price(log, 2));
+    }
+
+    /**
+     * Ensure that worker JVMs price with the catalogue file they are given, not the built in one
+     */
+    @Test
+    public void CheckLocalWorkersUseCatalogue() throws IOException, InterruptedException {
+        Path catalogue = temporaryFolder.newFile().toPath();
+        new Catalogue.Builder().add("Apple", 100).add("Orange", 10).build().write(catalogue);
+        Catalogue original = Catalogue.getActive();
+        try {
+            Catalogue.setActive(Catalogue.load(catalogue));
+            expected = new BasketLogPricer().price(log);
+        } finally {
+            Catalogue.setActive(original);
+        }
+
+        assertTotals(ShardCoordinator.price(log, catalogue, 2));
+    }
+
+    /**
+     * Ensure that a shard held by a worker which disconnects is priced by another worker
+     */
+    @Test
+    public void CheckShardIsReassignedWhenAWorkerFails() throws IOException, InterruptedException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(log, 16, 60000)) {
+            assertThat(coordinator.getShardCount(), is(equalTo(16)));
+
+            // Takes a shard and drops it
+            try (Socket failingWorker = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(failingWorker.getInputStream(), StandardCharsets.UTF_8));
+                assertThat(in.readLine().startsWith("SHARD "), is(equalTo(true)));
+            }
+
+            Thread worker = new Thread(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+                    ShardWorker.serve(socket);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+            assertTotals(coordinator.awaitTotals());
+            worker.join();
+        }
+    }
+
+    /**
+     * Ensure that a worker answering for the wrong shard, or with missing values, is dropped and its shard priced by
+     * another worker
+     */
+    @Test
+    public void CheckMalformedResultsAreRejected() throws IOException, InterruptedException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(log, 16, 60000)) {
+            for (String result : new String[]{"RESULT %d 1 1", "RESULT 99 1 1 0 0"}) {
+                try (Socket failingWorker = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(failingWorker.getInputStream(), StandardCharsets.UTF_8));
+                    String shard = in.readLine().split(" ")[1];
+                    Writer out = new OutputStreamWriter(failingWorker.getOutputStream(), StandardCharsets.UTF_8);
+                    out.write(String.format(result, Integer.parseInt(shard)) + "\n");
+                    out.flush();
+                    // The coordinator hangs up rather than handing out another shard
+                    assertThat(in.readLine(), is(nullValue()));
+                }
+            }
+
+            Thread worker = new Thread(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+                    ShardWorker.serve(socket);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+            assertTotals(coordinator.awaitTotals());
+            worker.join();
+        }
+    }
+
+    /**
+     * Ensure that shards which don't add up to the basket count in the log's header fail the run
+     */
+    @Test(expected = IOException.class)
+    public void CheckBasketCountIsChecked() throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, expected.getBasketCount() + 1), 3 * Integer.BYTES);
+        }
+        ShardCoordinator.price(log, 1);
+    }
+
+    /**
+     * Ensure that a log is split into ranges of whole baskets covering every basket once
+     */
+    @Test
+    public void CheckSplitCoversLog() throws IOException {
+        long[] boundaries = BasketLogPricer.split(log, 7);
+        assertThat(boundaries.length, is(equalTo(8)));
+
+        DailyTotals totals = new DailyTotals();
+        for (int shard = 0; shard + 1 < boundaries.length; shard++) {
+            totals.merge(new BasketLogPricer().price(log, boundaries[shard], boundaries[shard + 1]));
+        }
+        assertTotals(totals);
+
+        // More shards than baskets
+        assertThat(BasketLogPricer.split(log, 100000).length, is(equalTo(10001)));
+    }
+
+    private void assertTotals(final DailyTotals totals) {
+        assertThat(totals.getBasketCount(), is(equalTo(expected.getBasketCount())));
+        assertThat(totals.getTotalPence(), is(equalTo(expected.getTotalPence())));
+        for (Offer offer : Offer.values()) {
+            assertThat(totals.getOfferSavings(offer), is(equalTo(expected.getOfferSavings(offer))));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.martynhaigh.checkout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ShardWorkerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Ensure that a shard is answered with its totals and savings per offer, and bad shards with a failure
+     */
+    @Test
+    public void CheckShardResponses() throws IOException {
+        Path log = temporaryFolder.newFile("baskets log").toPath();
+        BasketLogWriter.convert(new StringReader("apple,apple,orange\norange,orange,orange\n"), log);
+        long end = BasketLogPricer.split(log, 1)[1];
+        BasketLogPricer pricer = new BasketLogPricer();
+
+        assertThat(ShardWorker.handle(pricer, "SHARD 3 " + BasketLogWriter.HEADER_SIZE + " " + end + " " + log),
+                is(equalTo("RESULT 3 2 135 60 25")));
+        assertThat(ShardWorker.handle(pricer, "SHARD 4 " + BasketLogWriter.HEADER_SIZE + " " + (end - 1) + " " + log), startsWith("FAILED 4 "));
+        assertThat(ShardWorker.handle(pricer, "PRICE everything"), startsWith("FAILED "));
+    }
+}